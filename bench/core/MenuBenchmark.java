@@ -0,0 +1,274 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Benchmarks name lookups and search-as-you-type on a menu of 2,000 items against scanning the whole menu, as Menu
+ * did before it was indexed. Also checks that the indexes agree with a scan, including after the menu is changed
+ * through each kind of list mutator and after it is reloaded.
+ * <p>
+ * Run from the project root, with the sources compiled to target/classes:
+ * <pre>
+ * javac -cp target/classes -d target/bench bench/core/MenuBenchmark.java
+ * java -cp target/classes:target/bench core.MenuBenchmark
+ * </pre>
+ */
+public class MenuBenchmark {
+    private static final int ITEMS = 2000; // The number of items on the menu
+    private static final int ROUNDS = 100; // The number of measured passes over the workload
+    private static final int WARMUP = 100; // The number of passes before measuring
+    private static final int LIMIT = 10; // The number of results shown while typing
+    private static final String[] ADJECTIVES = {"Spicy", "Smoked", "Grilled", "Crispy", "Classic", "Double",
+            "Garden", "Roasted", "Sweet", "Hot"};
+    private static final String[] BASES = {"Chicken", "Beef", "Tofu", "Mushroom", "Salmon", "Pork", "Bean",
+            "Cheese", "Shrimp", "Veggie"};
+    private static final String[] DISHES = {"Burger", "Wrap", "Salad", "Bowl", "Taco", "Pizza", "Burrito",
+            "Sandwich", "Soup", "Noodles"};
+    private static final String[] TAGS = {"main", "side", "vegan", "vegetarian", "spicy", "gluten-free"};
+    private static final String[] PREFIXES = {"b", "bu", "bur", "burg", "chi", "sp", "spicy b", "tofu", "x", "12"};
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args unused.
+     */
+    public static void main(String[] args) {
+        Menu menu = new Menu();
+        List<MenuItem> items = createItems(menu.getTagDictionary(), 0);
+        menu.addAll(items);
+        verify(menu);
+
+        long sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += lookups(menu, true) + lookups(menu, false);
+            sink += searches(menu, true, LIMIT) + searches(menu, false, LIMIT);
+            sink += searches(menu, true, Integer.MAX_VALUE) + searches(menu, false, Integer.MAX_VALUE);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            sink += lookups(menu, false);
+        }
+        long scanLookup = (System.nanoTime() - start) / ((long) ROUNDS * ITEMS);
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            sink += lookups(menu, true);
+        }
+        long indexLookup = (System.nanoTime() - start) / ((long) ROUNDS * ITEMS);
+
+        long[] scanSearch = new long[2], indexSearch = new long[2];
+        int[] limits = {LIMIT, Integer.MAX_VALUE};
+        for (int j = 0; j < limits.length; j++) {
+            start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                sink += searches(menu, false, limits[j]);
+            }
+            scanSearch[j] = (System.nanoTime() - start) / ((long) ROUNDS * PREFIXES.length);
+            start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                sink += searches(menu, true, limits[j]);
+            }
+            indexSearch[j] = (System.nanoTime() - start) / ((long) ROUNDS * PREFIXES.length);
+        }
+
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            menu.clear();
+            menu.getTagDictionary().reset();
+            menu.addAll(createItems(menu.getTagDictionary(), i + 1));
+        }
+        long reload = (System.nanoTime() - start) / ROUNDS;
+        verify(menu);
+
+        System.out.printf("Menu of %d items (%d)%n", ITEMS, sink % 10);
+        System.out.printf("  get by name:     scan %8d ns, index %8d ns, %6.1fx%n", scanLookup, indexLookup,
+                scanLookup / (double) Math.max(1, indexLookup));
+        System.out.printf("  search, top %d:  scan %8d ns, index %8d ns, %6.1fx%n", LIMIT, scanSearch[0],
+                indexSearch[0], scanSearch[0] / (double) Math.max(1, indexSearch[0]));
+        System.out.printf("  search, all:     scan %8d ns, index %8d ns, %6.1fx%n", scanSearch[1], indexSearch[1],
+                scanSearch[1] / (double) Math.max(1, indexSearch[1]));
+        System.out.printf("  reload:          %d us%n", reload / 1000);
+
+        checkMutators(menu);
+        System.out.println("Indexes agree with a scan after every mutator");
+    }
+
+    /**
+     * Creates the items of a menu.
+     *
+     * @param dictionary the dictionary to intern the items' tags in.
+     * @param version    a number distinguishing the names of successive reloads.
+     * @return the items.
+     */
+    private static List<MenuItem> createItems(TagDictionary dictionary, int version) {
+        ArrayList<MenuItem> items = new ArrayList<>(ITEMS);
+        for (int i = 0; i < ITEMS; i++) {
+            String name = String.format("%s %s %s %d", ADJECTIVES[i % ADJECTIVES.length],
+                    BASES[i / ADJECTIVES.length % BASES.length], DISHES[i / 100 % DISHES.length], i + version * ITEMS);
+            ArrayList<String> tags = new ArrayList<>(Arrays.asList(TAGS[i % TAGS.length],
+                    TAGS[(i / TAGS.length) % TAGS.length]));
+            items.add(new MenuItem(name, 5 + i % 20, new HashMap<>(), tags, dictionary));
+        }
+        return items;
+    }
+
+    /**
+     * Looks up every item by name.
+     *
+     * @param menu    the menu.
+     * @param indexed true to use the menu's index, false to scan the menu.
+     * @return a value depending on the items found, so the lookups are not optimized away.
+     */
+    private static long lookups(Menu menu, boolean indexed) {
+        long sum = 0;
+        for (int i = 0; i < menu.size(); i++) {
+            String name = menu.get(i).getName();
+            MenuItem found = indexed ? menu.get(name) : scan(menu, name);
+            sum += found.getOrdinal();
+        }
+        return sum;
+    }
+
+    /**
+     * Searches for every prefix as it is typed.
+     *
+     * @param menu    the menu.
+     * @param indexed true to use the menu's index, false to scan the menu.
+     * @param limit   the maximum number of items per search.
+     * @return the number of items found, so the searches are not optimized away.
+     */
+    private static long searches(Menu menu, boolean indexed, int limit) {
+        long sum = 0;
+        for (String prefix : PREFIXES) {
+            sum += (indexed ? menu.search(prefix, limit) : scan(menu, prefix, limit)).size();
+        }
+        return sum;
+    }
+
+    /**
+     * Finds an item by name by scanning the menu.
+     *
+     * @param menu the menu.
+     * @param name the name.
+     * @return the item, or null.
+     */
+    private static MenuItem scan(Menu menu, String name) {
+        for (MenuItem item : menu) {
+            if (item.getName().equals(name)) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the items with a word in their name starting with a prefix by scanning the menu.
+     *
+     * @param menu   the menu.
+     * @param prefix the prefix.
+     * @param limit  the maximum number of items.
+     * @return the items found, in menu order.
+     */
+    private static List<MenuItem> scan(Menu menu, String prefix, int limit) {
+        String key = prefix.trim().toLowerCase(Locale.ROOT);
+        ArrayList<MenuItem> found = new ArrayList<>();
+        for (MenuItem item : menu) {
+            if (found.size() >= limit) {
+                break;
+            }
+            String name = item.getName().toLowerCase(Locale.ROOT);
+            for (int i = 0; i < name.length(); i++) {
+                boolean wordStart = i == 0 || !Character.isLetterOrDigit(name.charAt(i - 1));
+                if (wordStart && name.startsWith(key, i)) {
+                    found.add(item);
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Checks that the menu's indexes agree with a scan of the menu.
+     *
+     * @param menu the menu.
+     * @throws AssertionError if they do not.
+     */
+    private static void verify(Menu menu) {
+        for (MenuItem item : menu) {
+            check(menu.get(item.getName()) == item, "lookup of " + item.getName());
+        }
+        for (String prefix : PREFIXES) {
+            HashSet<MenuItem> expected = new HashSet<>(scan(menu, prefix, Integer.MAX_VALUE));
+            HashSet<MenuItem> actual = new HashSet<>(menu.search(prefix, Integer.MAX_VALUE));
+            check(expected.equals(actual), "search for \"" + prefix + "\"");
+        }
+        for (String tag : TAGS) {
+            int expected = 0;
+            for (MenuItem item : menu) {
+                expected += item.getTags().contains(tag) ? 1 : 0;
+            }
+            check(menu.filter(tag).size() == expected, "filter by " + tag);
+        }
+        check(new HashSet<>(menu.getTagDictionary().getTags()).equals(new HashSet<>(Arrays.asList(TAGS))),
+                "tags in use");
+    }
+
+    /**
+     * Changes the menu through every kind of list mutator, checking the indexes after each.
+     *
+     * @param menu the menu.
+     * @throws AssertionError if the indexes disagree with a scan.
+     */
+    private static void checkMutators(Menu menu) {
+        MenuItem first = menu.get(0);
+        menu.removeIf(a -> a.getName().contains("Burger"));
+        check(menu.search("burger", LIMIT).isEmpty(), "removeIf");
+        verify(menu);
+
+        MenuItem replaced = menu.set(0, new MenuItem("Replacement Special", 9, new HashMap<>(),
+                new ArrayList<>(Arrays.asList(TAGS)), menu.getTagDictionary()));
+        check(menu.search("replacement", LIMIT).size() == 1 && !menu.contains(replaced), "set");
+        verify(menu);
+
+        for (Iterator<MenuItem> iterator = menu.iterator(); iterator.hasNext(); ) {
+            if (iterator.next().getName().contains("Taco")) {
+                iterator.remove();
+            }
+        }
+        check(menu.search("taco", LIMIT).isEmpty(), "iterator remove");
+        verify(menu);
+
+        menu.removeAll(new ArrayList<>(menu.subList(0, 10)));
+        menu.retainAll(new ArrayList<>(menu.subList(0, menu.size() / 2)));
+        menu.add(0, replaced);
+        menu.addAll(3, Arrays.asList(first));
+        verify(menu);
+
+        try {
+            menu.subList(0, 1).clear();
+            check(false, "sub-lists are read-only");
+        } catch (UnsupportedOperationException expected) {
+            // changes through a sub-list would bypass the indexes
+        }
+    }
+
+    /**
+     * Fails if a condition does not hold.
+     *
+     * @param condition the condition.
+     * @param what      what was checked.
+     * @throws AssertionError if the condition does not hold.
+     */
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError("Index disagrees with a scan: " + what);
+        }
+    }
+}
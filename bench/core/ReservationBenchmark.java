@@ -0,0 +1,250 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmarks reserving the ingredients of orders from many threads at once, comparing the check-then-act reservation
+ * IngredientManager used to make, which checks every ingredient's stock and then reserves each one separately,
+ * with the all-or-nothing reservation of IngredientManager.reserve, which locks the order's ingredients in id order.
+ * <p>
+ * Each run first measures throughput with plenty of stock, then lets the threads race for a small stock until it
+ * runs out, and counts the units reserved beyond the stock. The locked reservation must never oversell; the
+ * benchmark fails if it does.
+ * <p>
+ * Run from the project root, with the sources compiled to target/classes:
+ * <pre>
+ * javac -cp target/classes -d target/bench bench/core/ReservationBenchmark.java
+ * java -cp target/classes:target/bench core.ReservationBenchmark [max threads]
+ * </pre>
+ */
+public class ReservationBenchmark {
+    private static final int INGREDIENTS = 32; // The number of ingredients in the inventory
+    private static final int ORDERS = 256; // The number of distinct orders placed
+    private static final int OPERATIONS = 200000; // The number of reservations per thread when measuring throughput
+    private static final int PLENTY = Integer.MAX_VALUE / 2; // The stock of each ingredient when measuring throughput
+    private static final int SCARCE = 2000; // The stock of each ingredient when racing for it
+    private static final int ROUNDS = 5; // The number of times each race is run
+
+    /**
+     * A way of reserving the ingredients of an order.
+     */
+    private interface Reservation {
+        /**
+         * Reserves the ingredients of an order, if there is enough stock.
+         *
+         * @param needed the order's demand vector.
+         * @return true if the ingredients were reserved.
+         */
+        boolean reserve(IngredientVector needed);
+    }
+
+    /**
+     * The baseline: checks that every ingredient has enough stock, then reserves them one by one.
+     */
+    private static final Reservation CHECK_THEN_ACT = needed -> {
+        for (int i = 0; i < needed.size(); i++) {
+            if (needed.ingredient(i).getAmount() < needed.amount(i)) {
+                return false;
+            }
+        }
+        for (int i = 0; i < needed.size(); i++) {
+            needed.ingredient(i).reserve(needed.amount(i));
+        }
+        return true;
+    };
+
+    /**
+     * The reservation IngredientManager makes.
+     */
+    private static final Reservation LOCKED = IngredientManager::reserve;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the largest number of threads, 8 by default.
+     * @throws InterruptedException if interrupted.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        System.out.printf("%d ingredients, %d orders of 2 to 4 ingredients%n", INGREDIENTS, ORDERS);
+        System.out.printf("%-8s %-15s %12s %12s%n", "threads", "reservation", "ops/s", "oversold");
+
+        boolean failed = false;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            for (int i = 0; i < 2; i++) {
+                boolean locked = i == 1;
+                Reservation reservation = locked ? LOCKED : CHECK_THEN_ACT;
+                long throughput = throughput(reservation, threads);
+                long oversold = 0;
+                for (int round = 0; round < ROUNDS; round++) {
+                    oversold += race(reservation, threads, round);
+                }
+                System.out.printf("%-8d %-15s %12d %12d%n", threads, locked ? "locked" : "check-then-act",
+                        throughput, oversold);
+                failed |= locked && oversold != 0;
+            }
+        }
+
+        if (failed) {
+            throw new AssertionError("The locked reservation oversold");
+        }
+        System.out.println("The locked reservation never oversold");
+    }
+
+    /**
+     * Measures the reservations per second of threads reserving from plenty of stock.
+     *
+     * @param reservation the way of reserving.
+     * @param threads     the number of threads.
+     * @return the reservations per second.
+     * @throws InterruptedException if interrupted.
+     */
+    private static long throughput(Reservation reservation, int threads) throws InterruptedException {
+        List<IngredientVector> orders = createOrders(createIngredients(PLENTY), 0);
+        AtomicLong reserved = new AtomicLong();
+        Task task = thread -> {
+            Random random = new Random(thread);
+            long count = 0;
+            for (int i = 0; i < OPERATIONS; i++) {
+                count += reservation.reserve(orders.get(random.nextInt(orders.size()))) ? 1 : 0;
+            }
+            reserved.addAndGet(count);
+        };
+
+        run(threads, task); // warm up
+        long start = System.nanoTime();
+        run(threads, task);
+        long elapsed = System.nanoTime() - start;
+        if (reserved.get() != 2L * OPERATIONS * threads) {
+            throw new AssertionError("A reservation failed with plenty of stock");
+        }
+        return (long) OPERATIONS * threads * 1000000000L / elapsed;
+    }
+
+    /**
+     * Lets threads reserve from a small stock until it runs out, and counts the units reserved beyond it.
+     *
+     * @param reservation the way of reserving.
+     * @param threads     the number of threads.
+     * @param round       the number of the round, varying the orders.
+     * @return the number of units oversold, over every ingredient.
+     * @throws InterruptedException if interrupted.
+     */
+    private static long race(Reservation reservation, int threads, int round) throws InterruptedException {
+        List<Ingredient> ingredients = createIngredients(SCARCE);
+        List<IngredientVector> orders = createOrders(ingredients, round);
+        long[][] reserved = new long[threads][INGREDIENTS];
+        run(threads, thread -> {
+            Random random = new Random(thread + round);
+            int failures = 0;
+            while (failures < ORDERS * 4) {
+                IngredientVector order = orders.get(random.nextInt(orders.size()));
+                if (reservation.reserve(order)) {
+                    for (int i = 0; i < order.size(); i++) {
+                        reserved[thread][order.id(i)] += order.amount(i);
+                    }
+                    failures = 0;
+                } else {
+                    failures++;
+                }
+            }
+        });
+
+        long oversold = 0;
+        for (Ingredient ingredient : ingredients) {
+            long total = 0;
+            for (long[] thread : reserved) {
+                total += thread[ingredient.getId()];
+            }
+            if (total != ingredient.getReserved() || total != SCARCE - ingredient.getAmount()) {
+                throw new AssertionError("Reservations of " + ingredient + " were lost");
+            }
+            oversold += Math.max(0, total - SCARCE);
+        }
+        return oversold;
+    }
+
+    /**
+     * Creates and registers the ingredients of an inventory.
+     *
+     * @param stock the amount of each ingredient in stock.
+     * @return the ingredients, by id.
+     */
+    private static List<Ingredient> createIngredients(int stock) {
+        IngredientRegistry registry = new IngredientRegistry(INGREDIENTS);
+        ArrayList<Ingredient> ingredients = new ArrayList<>();
+        for (int i = 0; i < INGREDIENTS; i++) {
+            Ingredient ingredient = new Ingredient("Ingredient " + i, 0, stock, 0, false);
+            registry.register(ingredient);
+            ingredients.add(ingredient);
+        }
+        return ingredients;
+    }
+
+    /**
+     * Creates orders of 2 to 4 ingredients, skewed towards the first ingredients so that orders contend.
+     *
+     * @param ingredients the ingredients.
+     * @param seed        the seed of the orders.
+     * @return the orders' demand vectors.
+     */
+    private static List<IngredientVector> createOrders(List<Ingredient> ingredients, int seed) {
+        Random random = new Random(seed);
+        ArrayList<IngredientVector> orders = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            HashMap<Ingredient, Integer> order = new HashMap<>();
+            int size = 2 + random.nextInt(3);
+            while (order.size() < size) {
+                int id = (int) (ingredients.size() * Math.pow(random.nextDouble(), 2));
+                order.put(ingredients.get(id), 1 + random.nextInt(2));
+            }
+            orders.add(IngredientVector.of(order));
+        }
+        return orders;
+    }
+
+    /**
+     * A task run by each thread.
+     */
+    private interface Task {
+        /**
+         * Runs the task.
+         *
+         * @param thread the index of the thread, from 0.
+         */
+        void run(int thread);
+    }
+
+    /**
+     * Runs a task on several threads, started together, and waits for all of them.
+     *
+     * @param threads the number of threads.
+     * @param task    the task.
+     * @throws InterruptedException if interrupted.
+     */
+    private static void run(int threads, Task task) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            int thread = i;
+            workers[i] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                task.run(thread);
+            }, "reserve-" + i);
+            workers[i].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+}
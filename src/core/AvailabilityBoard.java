@@ -0,0 +1,181 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The restaurant's "86 board": how many portions of each menu item can be made from the ingredients in stock.
+ * A reverse index from each ingredient to the menu items that use it means a change in stock only recomputes the
+ * items using that ingredient, and listeners are only notified of items whose availability actually changed.
+ */
+public class AvailabilityBoard implements InventoryListener {
+    /**
+     * The number of portions reported for a menu item that uses no ingredients.
+     */
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+
+    private final Menu menu; // The menu the board is for
+    private final ArrayList<ArrayList<MenuItem>> usedBy; // The menu items using each ingredient, indexed by id
+    private final ConcurrentHashMap<MenuItem, Integer> portions; // The portions of each item that can be made
+    private final CopyOnWriteArrayList<AvailabilityListener> listeners; // Listeners pushed every change
+
+    /**
+     * Creates an AvailabilityBoard for a menu and listens to the stock of the given ingredients.
+     *
+     * @param menu        the menu.
+     * @param ingredients the restaurant's ingredients.
+     */
+    public AvailabilityBoard(Menu menu, List<Ingredient> ingredients) {
+        this.menu = menu;
+        this.usedBy = new ArrayList<>();
+        this.portions = new ConcurrentHashMap<>();
+        this.listeners = new CopyOnWriteArrayList<>();
+
+        rebuild();
+        for (Ingredient ingredient : ingredients) {
+            ingredient.addListener(this);
+        }
+    }
+
+    /**
+     * Rebuilds the reverse index and every item's availability, e.g. after the menu was reloaded, and notifies
+     * listeners.
+     */
+    public void rebuild() {
+        synchronized (this) {
+            usedBy.clear();
+            portions.clear();
+
+            for (MenuItem item : menu) {
+                IngredientVector demand = item.getDemand();
+                for (int i = 0; i < demand.size(); i++) {
+                    int id = demand.id(i);
+                    while (usedBy.size() <= id) {
+                        usedBy.add(new ArrayList<>());
+                    }
+                    usedBy.get(id).add(item);
+                }
+                portions.put(item, compute(item));
+            }
+        }
+
+        for (AvailabilityListener listener : listeners) {
+            listener.menuReloaded();
+        }
+    }
+
+    /**
+     * Recomputes the availability of the menu items using an ingredient, and notifies listeners of the items whose
+     * availability changed.
+     *
+     * @param ingredient the ingredient that changed.
+     */
+    @Override
+    public void amountChanged(Ingredient ingredient) {
+        ArrayList<MenuItem> changed = new ArrayList<>();
+        ArrayList<Integer> changedPortions = new ArrayList<>();
+
+        synchronized (this) {
+            int id = ingredient.getId();
+            if (id < 0 || id >= usedBy.size()) {
+                return;
+            }
+
+            for (MenuItem item : usedBy.get(id)) {
+                int now = compute(item);
+                Integer before = portions.put(item, now);
+                if (before == null || before != now) {
+                    changed.add(item);
+                    changedPortions.add(now);
+                }
+            }
+        }
+
+        for (int i = 0; i < changed.size(); i++) {
+            for (AvailabilityListener listener : listeners) {
+                listener.availabilityChanged(changed.get(i), changedPortions.get(i));
+            }
+        }
+    }
+
+    /**
+     * Computes how many portions of a menu item can be made from the ingredients in stock.
+     *
+     * @param item the menu item.
+     * @return the number of portions, or UNLIMITED if the item uses no ingredients.
+     */
+    private static int compute(MenuItem item) {
+        IngredientVector demand = item.getDemand();
+        int result = UNLIMITED;
+        for (int i = 0; i < demand.size(); i++) {
+            result = Math.min(result, Math.max(0, demand.ingredient(i).getAmount()) / demand.amount(i));
+        }
+        return result;
+    }
+
+    /**
+     * Returns how many portions of a menu item can be made from the ingredients in stock.
+     *
+     * @param item the menu item.
+     * @return the number of portions, UNLIMITED if the item uses no ingredients, or 0 if it is not on the menu.
+     */
+    public int getPortions(MenuItem item) {
+        return portions.getOrDefault(item, 0);
+    }
+
+    /**
+     * Returns if a menu item can be made at all.
+     *
+     * @param item the menu item.
+     * @return true if at least one portion can be made.
+     */
+    public boolean isAvailable(MenuItem item) {
+        return getPortions(item) > 0;
+    }
+
+    /**
+     * Returns the menu items that cannot be made, i.e. the items "86'd".
+     *
+     * @return a list of menu items.
+     */
+    public List<MenuItem> getUnavailable() {
+        ArrayList<MenuItem> result = new ArrayList<>();
+        for (Map.Entry<MenuItem, Integer> entry : portions.entrySet()) {
+            if (entry.getValue() <= 0) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the availability of every menu item.
+     *
+     * @return an unmodifiable view of the portions of each item that can be made.
+     */
+    public Map<MenuItem, Integer> getPortions() {
+        return Collections.unmodifiableMap(portions);
+    }
+
+    /**
+     * Adds a listener to be pushed every change in availability.
+     *
+     * @param listener the listener.
+     */
+    public void addListener(AvailabilityListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener the listener.
+     */
+    public void removeListener(AvailabilityListener listener) {
+        listeners.remove(listener);
+    }
+}
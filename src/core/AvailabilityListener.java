@@ -0,0 +1,22 @@
+package core;
+
+/**
+ * A listener that is notified whenever the number of portions of a menu item that can be made changes, or the menu
+ * is replaced.
+ */
+public interface AvailabilityListener {
+    /**
+     * Called when the number of portions of a menu item that can be made has changed.
+     *
+     * @param item     the menu item.
+     * @param portions the number of portions that can now be made.
+     */
+    void availabilityChanged(MenuItem item, int portions);
+
+    /**
+     * Called after the menu was reloaded and the availability of every item recomputed. The items passed to earlier
+     * calls are no longer on the menu.
+     */
+    default void menuReloaded() {
+    }
+}
@@ -0,0 +1,305 @@
+package core;
+
+import visual.gui.Cook;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A kitchen station's dispatch queue. Orders are queued as tickets in the order given by a Policy; a ticket can be
+ * claimed by exactly one cook, and cancelling a ticket is O(1).
+ */
+public class DispatchQueue {
+    /**
+     * The policies that determine the order in which tickets are offered to cooks.
+     */
+    public enum Policy implements Comparator<Ticket> {
+        /**
+         * Tickets are offered in the order they were submitted.
+         */
+        FIFO {
+            @Override
+            public int compare(Ticket a, Ticket b) {
+                return Long.compare(a.sequence, b.sequence);
+            }
+        },
+        /**
+         * Tickets of the same table are offered together, tables in the order of their oldest waiting ticket.
+         */
+        TABLE_GROUPED {
+            @Override
+            public int compare(Ticket a, Ticket b) {
+                int group = Long.compare(a.group, b.group);
+                return group != 0 ? group : Long.compare(a.sequence, b.sequence);
+            }
+        },
+        /**
+         * Tickets with a higher priority, e.g. remade orders, are offered first, otherwise in submission order.
+         */
+        PRIORITY {
+            @Override
+            public int compare(Ticket a, Ticket b) {
+                int priority = Integer.compare(b.priority, a.priority);
+                return priority != 0 ? priority : Long.compare(a.sequence, b.sequence);
+            }
+        }
+    }
+
+    /**
+     * A queued order.
+     */
+    public static final class Ticket {
+        private static final int WAITING = 0, CLAIMED = 1, CANCELLED = 2; // Possible ticket states
+
+        private final Order order; // The queued order
+        private final long sequence; // The submission sequence number
+        private final long group; // The sequence number of the table's oldest waiting ticket
+        private final int priority; // The priority of the ticket
+        private final long enqueuedAt; // The time the ticket was submitted, in nanoseconds
+        private final AtomicInteger state = new AtomicInteger(WAITING); // The state of the ticket
+
+        /**
+         * Creates a ticket.
+         *
+         * @param order    the queued order.
+         * @param sequence the submission sequence number.
+         * @param group    the sequence number of the table's oldest waiting ticket.
+         * @param priority the priority of the ticket.
+         */
+        private Ticket(Order order, long sequence, long group, int priority) {
+            this.order = order;
+            this.sequence = sequence;
+            this.group = group;
+            this.priority = priority;
+            this.enqueuedAt = System.nanoTime();
+        }
+
+        /**
+         * Returns the queued order.
+         *
+         * @return an order.
+         */
+        public Order getOrder() {
+            return order;
+        }
+
+        /**
+         * Returns the priority of the ticket.
+         *
+         * @return the priority.
+         */
+        public int getPriority() {
+            return priority;
+        }
+
+        /**
+         * Returns how long the ticket has been waiting.
+         *
+         * @return the waiting time, in nanoseconds.
+         */
+        public long getWaitNanos() {
+            return System.nanoTime() - enqueuedAt;
+        }
+    }
+
+    private final Policy policy; // The ordering policy
+    private final ConcurrentSkipListSet<Ticket> queue; // Tickets in policy order; claimed or cancelled ones lazily
+    private final ConcurrentHashMap<Order, Ticket> tickets; // Waiting tickets indexed by order
+    private final ConcurrentHashMap<Table, Long> groups; // The group of each table with waiting tickets
+    private final ConcurrentHashMap<Table, AtomicInteger> waitingPerTable; // Number of waiting tickets per table
+    private final AtomicLong sequence = new AtomicLong(); // The next submission sequence number
+    private final AtomicInteger depth = new AtomicInteger(); // The number of waiting tickets
+
+    private final LongAdder claims = new LongAdder(); // The number of claimed tickets
+    private final LongAdder totalWaitNanos = new LongAdder(); // The summed waiting time of claimed tickets
+    private final AtomicLong maxWaitNanos = new AtomicLong(); // The longest waiting time of a claimed ticket
+
+    /**
+     * Creates an empty DispatchQueue.
+     *
+     * @param policy the ordering policy.
+     */
+    public DispatchQueue(Policy policy) {
+        this.policy = policy;
+        this.queue = new ConcurrentSkipListSet<>(policy);
+        this.tickets = new ConcurrentHashMap<>();
+        this.groups = new ConcurrentHashMap<>();
+        this.waitingPerTable = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns the ordering policy of this queue.
+     *
+     * @return the policy.
+     */
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Submits an order to the kitchen.
+     *
+     * @param order    the order.
+     * @param priority the priority of the order; higher is more urgent.
+     */
+    public void submit(Order order, int priority) {
+        long seq = sequence.getAndIncrement();
+        Table table = order.getTable();
+
+        long group;
+        synchronized (groups) {
+            waitingPerTable.computeIfAbsent(table, k -> new AtomicInteger()).incrementAndGet();
+            group = groups.computeIfAbsent(table, k -> seq);
+        }
+
+        Ticket ticket = new Ticket(order, seq, group, priority);
+        if (tickets.putIfAbsent(order, ticket) != null) {
+            leave(table);
+            return; // already queued
+        }
+
+        queue.add(ticket);
+        depth.incrementAndGet();
+    }
+
+    /**
+     * Claims an order for a cook. Only one cook can claim an order.
+     *
+     * @param order the order.
+     * @param cook  the cook claiming the order.
+     * @return true if the cook claimed the order, false if it was already claimed or cancelled.
+     */
+    public boolean claim(Order order, Cook cook) {
+        Ticket ticket = tickets.get(order);
+        if (ticket == null || !ticket.state.compareAndSet(Ticket.WAITING, Ticket.CLAIMED)) {
+            return false;
+        }
+
+        tickets.remove(order, ticket);
+        depth.decrementAndGet();
+        leave(order.getTable());
+
+        long wait = ticket.getWaitNanos();
+        claims.increment();
+        totalWaitNanos.add(wait);
+        maxWaitNanos.accumulateAndGet(wait, Math::max);
+        return true;
+    }
+
+    /**
+     * Cancels a waiting order, removing it from the queue.
+     *
+     * @param order the order.
+     * @return true if the order was waiting, false otherwise.
+     */
+    public boolean cancel(Order order) {
+        Ticket ticket = tickets.get(order);
+        if (ticket == null || !ticket.state.compareAndSet(Ticket.WAITING, Ticket.CANCELLED)) {
+            return false;
+        }
+
+        tickets.remove(order, ticket);
+        depth.decrementAndGet();
+        leave(order.getTable());
+        return true;
+    }
+
+    /**
+     * Records that a table has one less waiting ticket.
+     *
+     * @param table the table.
+     */
+    private void leave(Table table) {
+        synchronized (groups) {
+            AtomicInteger waiting = waitingPerTable.get(table);
+            if (waiting != null && waiting.decrementAndGet() <= 0) {
+                waitingPerTable.remove(table);
+                groups.remove(table);
+            }
+        }
+    }
+
+    /**
+     * Returns the waiting orders, in the order given by the policy. Claimed and cancelled tickets are purged from
+     * the queue along the way.
+     *
+     * @return a list of waiting orders.
+     */
+    public ArrayList<Order> getWaiting() {
+        ArrayList<Order> waiting = new ArrayList<>();
+        Iterator<Ticket> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            Ticket ticket = iterator.next();
+            if (ticket.state.get() == Ticket.WAITING) {
+                waiting.add(ticket.order);
+            } else {
+                iterator.remove();
+            }
+        }
+        return waiting;
+    }
+
+    /**
+     * Returns if an order is waiting in the queue.
+     *
+     * @param order the order.
+     * @return true if the order is waiting, false otherwise.
+     */
+    public boolean isWaiting(Order order) {
+        return tickets.containsKey(order);
+    }
+
+    /**
+     * Returns the number of waiting orders.
+     *
+     * @return the queue depth.
+     */
+    public int getDepth() {
+        return depth.get();
+    }
+
+    /**
+     * Returns the number of orders claimed by cooks.
+     *
+     * @return the number of claims.
+     */
+    public long getClaims() {
+        return claims.sum();
+    }
+
+    /**
+     * Returns the average time a claimed order waited in the queue.
+     *
+     * @return the average waiting time, in milliseconds.
+     */
+    public double getAverageWaitMillis() {
+        long count = claims.sum();
+        return count == 0 ? 0 : totalWaitNanos.sum() / (count * 1e6);
+    }
+
+    /**
+     * Returns the longest time a claimed order waited in the queue.
+     *
+     * @return the longest waiting time, in milliseconds.
+     */
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1e6;
+    }
+
+    /**
+     * Returns a String summary of the queue's metrics.
+     *
+     * @return a String.
+     */
+    @Override
+    public String toString() {
+        return String.format("%s queue: %d waiting, %d claimed, avg wait %.1fs, max wait %.1fs", policy,
+                getDepth(), getClaims(), getAverageWaitMillis() / 1000, getMaxWaitMillis() / 1000);
+    }
+}
@@ -0,0 +1,491 @@
+package core;
+
+import util.Journal;
+
+import java.io.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The restaurant's write-ahead journal of domain events. Every change to the persistent state (inventory and
+ * statistics) is appended to the journal as a small binary record instead of rewriting the JSON files.
+ * <p>
+ * Periodically, and once enough records have been appended, a StateSnapshot of the whole state is written and the
+ * journal segments it covers are deleted. At startup the latest snapshot is restored and only the records after it
+ * are replayed, so recovery time depends on the length of the tail, not of the history. Each change holds the
+ * shared side of a cut lock, taken with lock and unlock, while it changes the state and journals it; a snapshot
+ * holds the exclusive side while it captures the state, so it always sees whole changes, and exactly those it
+ * records as included.
+ * <p>
+ * Snapshots are flushed on a background thread, together with the JSON files as a readable export, so changes never
+ * wait for the disk; they are only held off while the state is captured in memory. Each flush replaces its files
+ * atomically. The duration of flushes and of those pauses is measured, and a last flush is made at shutdown.
+ * <p>
+ * If the journal cannot be opened, or its writer fails, a snapshot is taken after each change instead.
+ */
+public class EventJournal {
+    static final byte ORDER_PLACED = 1; // An order was placed: its item was ordered and its ingredients used
+    static final byte RESERVED = 2; // Ingredients were reserved for an order
+    static final byte COOKED = 3; // An order was cooked and its ingredients deducted
+    static final byte DELIVERED = 4; // An order was delivered
+    static final byte CANCELLED = 5; // An order was cancelled
+    static final byte SHIPMENT = 6; // A shipment of an ingredient was received
+    private static final long CLOSE_TIMEOUT = 10; // How long close waits for a flush in progress, in seconds
+
+    private final Restaurant restaurant; // The restaurant whose events are journalled
+    private final Journal journal; // The underlying journal, or null if it could not be opened
+    private final File snapshotFile; // The file of the latest snapshot
+    private final ReentrantReadWriteLock cut = new ReentrantReadWriteLock(); // Keeps snapshots between changes
+    private final ScheduledExecutorService snapshotter; // Takes snapshots in the background
+    private final long snapshotInterval; // The time between periodic snapshots, in milliseconds
+    private final long snapshotRecords; // The number of records after which a snapshot is taken
+    private final AtomicBoolean snapshotQueued = new AtomicBoolean(); // If a snapshot is waiting to be taken
+    private volatile long snapshotSequence = 0; // The sequence number of the last record in the latest snapshot
+    private final AtomicLong flushes = new AtomicLong(); // The number of flushes
+    private final AtomicLong flushNanos = new AtomicLong(); // The total duration of flushes, in nanoseconds
+    private final AtomicLong maxFlushNanos = new AtomicLong(); // The longest flush, in nanoseconds
+    private final AtomicLong maxPauseNanos = new AtomicLong(); // The longest a capture held off changes
+    private volatile long lastFlushNanos = 0; // The duration of the last flush, in nanoseconds
+
+    /**
+     * Opens the journal of a restaurant.
+     *
+     * @param directory        the directory of the journal's segments.
+     * @param snapshotFile     the file of the latest snapshot.
+     * @param restaurant       the restaurant.
+     * @param policy           when the journal forces its writes to disk.
+     * @param intervalMillis   the interval between forced writes, for FsyncPolicy.INTERVAL.
+     * @param snapshotInterval the time between periodic snapshots, in milliseconds.
+     * @param snapshotRecords  the number of records after which a snapshot is taken.
+     */
+    EventJournal(File directory, File snapshotFile, Restaurant restaurant, Journal.FsyncPolicy policy,
+                 long intervalMillis, long snapshotInterval, long snapshotRecords) {
+        this.restaurant = restaurant;
+        this.snapshotFile = snapshotFile;
+        this.snapshotInterval = snapshotInterval;
+        this.snapshotRecords = snapshotRecords;
+        this.snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Journal opened = null;
+        try {
+            opened = new Journal(directory, policy, intervalMillis);
+        } catch (IOException e) {
+            System.err.println("Unable to open journal " + directory + ", taking a snapshot after every change "
+                    + "instead: " + e.getMessage());
+        }
+        this.journal = opened;
+    }
+
+    /**
+     * Starts a change to the persistent state. The change, and the journal records describing it, must be made
+     * before calling unlock; a snapshot cannot be taken in between.
+     */
+    public void lock() {
+        cut.readLock().lock();
+    }
+
+    /**
+     * Ends a change to the persistent state.
+     */
+    public void unlock() {
+        cut.readLock().unlock();
+    }
+
+    /**
+     * Records that an order was placed.
+     *
+     * @param order the order.
+     */
+    public void orderPlaced(Order order) {
+        append(ORDER_PLACED, out -> {
+            out.writeInt(order.getOrderNumber());
+            out.writeUTF(order.getItem().getName());
+            writeVector(out, order.getIngredients());
+        });
+    }
+
+    /**
+     * Records that ingredients were reserved.
+     *
+     * @param reserved the ingredients reserved.
+     */
+    public void reserved(IngredientVector reserved) {
+        append(RESERVED, out -> writeVector(out, reserved));
+    }
+
+    /**
+     * Records that an order was cooked, and its ingredients deducted.
+     *
+     * @param order the order.
+     */
+    public void cooked(Order order) {
+        append(COOKED, out -> {
+            out.writeInt(order.getOrderNumber());
+            writeVector(out, order.getIngredients());
+        });
+    }
+
+    /**
+     * Records that an order was delivered.
+     *
+     * @param order the order.
+     */
+    public void delivered(Order order) {
+        append(DELIVERED, out -> out.writeInt(order.getOrderNumber()));
+    }
+
+    /**
+     * Records that an order was cancelled.
+     *
+     * @param order the order.
+     */
+    public void cancelled(Order order) {
+        append(CANCELLED, out -> out.writeInt(order.getOrderNumber()));
+    }
+
+    /**
+     * Records that a shipment of an ingredient was received.
+     *
+     * @param ingredient the ingredient.
+     * @param amount     the amount received.
+     */
+    public void shipment(Ingredient ingredient, int amount) {
+        append(SHIPMENT, out -> {
+            out.writeUTF(ingredient.getDisplayName());
+            out.writeInt(amount);
+        });
+    }
+
+    /**
+     * Encodes the payload of a record.
+     */
+    private interface Payload {
+        /**
+         * Writes the payload.
+         *
+         * @param out the stream to write to.
+         * @throws IOException if the payload cannot be written.
+         */
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Appends a record, and queues a snapshot if enough records were appended since the last one. If the record
+     * cannot be journalled, a snapshot is queued instead, which includes the change.
+     *
+     * @param type    the type of the record.
+     * @param payload the payload of the record.
+     */
+    private void append(byte type, Payload payload) {
+        if (journal == null) {
+            queueSnapshot();
+            return;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            payload.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // writing to memory cannot fail
+        }
+        long sequence;
+        try {
+            sequence = journal.append(type, bytes.toByteArray());
+        } catch (IOException e) {
+            queueSnapshot(); // the journal logged why its writer stopped
+            return;
+        }
+        if (sequence - snapshotSequence >= snapshotRecords) {
+            queueSnapshot();
+        }
+    }
+
+    /**
+     * Queues a flush on the background thread, unless one is already queued, so that a burst of changes causes a
+     * single flush.
+     */
+    private void queueSnapshot() {
+        if (snapshotQueued.compareAndSet(false, true)) {
+            try {
+                snapshotter.execute(() -> {
+                    snapshotQueued.set(false);
+                    flush();
+                });
+            } catch (RejectedExecutionException e) {
+                snapshotQueued.set(false); // shutting down, close flushes
+            }
+        }
+    }
+
+    /**
+     * Writes a demand vector by ingredient name, so that the journal does not depend on ingredient ids.
+     *
+     * @param out    the stream to write to.
+     * @param vector the vector.
+     * @throws IOException if the vector cannot be written.
+     */
+    private static void writeVector(DataOutputStream out, IngredientVector vector) throws IOException {
+        out.writeInt(vector.size());
+        for (int i = 0; i < vector.size(); i++) {
+            out.writeUTF(vector.ingredient(i).getDisplayName());
+            out.writeInt(vector.amount(i));
+        }
+    }
+
+    /**
+     * Restores the latest snapshot and replays the journal records after it, then takes a new snapshot if any were
+     * replayed, and starts flushing periodically.
+     *
+     * @return the number of records replayed.
+     */
+    int recover() {
+        StateSnapshot snapshot = null;
+        try {
+            snapshot = StateSnapshot.read(snapshotFile);
+        } catch (IOException e) {
+            System.err.println("Unable to read snapshot, replaying the journal onto the JSON files: "
+                    + e.getMessage());
+        }
+        if (snapshot != null) {
+            snapshot.restore(restaurant);
+            snapshotSequence = snapshot.getSequence();
+        }
+
+        int count = 0;
+        if (journal != null) {
+            try {
+                count = journal.replay(snapshotSequence, this::apply);
+            } catch (IOException e) {
+                System.err.println("Unable to replay the journal: " + e.getMessage());
+            }
+        }
+        if (count > 0 || snapshot == null) {
+            snapshot();
+        }
+
+        if (snapshotInterval > 0) {
+            snapshotter.scheduleWithFixedDelay(() -> {
+                if (journal != null && journal.getLastSequence() > snapshotSequence) {
+                    flush();
+                }
+            }, snapshotInterval, snapshotInterval, TimeUnit.MILLISECONDS);
+        }
+        return count;
+    }
+
+    /**
+     * Applies a journalled record to the restaurant.
+     *
+     * @param type      the type of the record.
+     * @param timestamp the time of the record, in milliseconds.
+     * @param in        the payload of the record.
+     * @throws IOException if the payload is malformed.
+     */
+    private void apply(byte type, long timestamp, DataInputStream in) throws IOException {
+        IngredientManager ingredientManager = restaurant.getIngredientManager();
+        switch (type) {
+            case ORDER_PLACED: {
+                in.readInt();
+                MenuItem item = restaurant.getMenu().get(in.readUTF());
+                if (item != null) {
+                    item.use();
+                    item.getRecentUsage().add(timestamp, 1);
+                }
+                int size = in.readInt();
+                for (int i = 0; i < size; i++) {
+                    Ingredient ingredient = find(in.readUTF());
+                    int amount = in.readInt();
+                    if (ingredient != null) {
+                        ingredient.setUsage(ingredient.getUsage() + amount);
+                        ingredient.getRecentUsage().add(timestamp, amount);
+                        ingredientManager.getReorderEngine().record(ingredient, amount, timestamp);
+                    }
+                }
+                break;
+            }
+            case COOKED:
+                in.readInt();
+                // fall through: the ingredients are deducted as when they are reserved
+            case RESERVED: {
+                int size = in.readInt();
+                for (int i = 0; i < size; i++) {
+                    Ingredient ingredient = find(in.readUTF());
+                    int amount = in.readInt();
+                    if (ingredient != null) {
+                        ingredient.update(amount);
+                    }
+                }
+                break;
+            }
+            case SHIPMENT: {
+                Ingredient ingredient = find(in.readUTF());
+                int amount = in.readInt();
+                if (ingredient != null) {
+                    ingredient.addAmount(amount);
+                }
+                break;
+            }
+            default:
+                // orders are not persisted, so deliveries, cancellations and unknown records change nothing
+                break;
+        }
+    }
+
+    /**
+     * Finds a journalled ingredient.
+     *
+     * @param name the name of the ingredient.
+     * @return the ingredient, or null if it no longer exists.
+     */
+    private Ingredient find(String name) {
+        try {
+            return restaurant.getIngredientManager().getIngredient(name);
+        } catch (UnknownIngredientException e) {
+            System.err.println(e.getMessage() + " in the journal, skipping it");
+            return null;
+        }
+    }
+
+    /**
+     * Takes a snapshot of the restaurant's state, then deletes the journal segments it covers.
+     */
+    public synchronized void snapshot() {
+        StateSnapshot state;
+        cut.writeLock().lock();
+        long start = System.nanoTime();
+        try {
+            state = StateSnapshot.capture(restaurant, journal != null ? journal.roll() : 0);
+        } catch (IOException e) {
+            System.err.println("Unable to roll the journal: " + e.getMessage());
+            return;
+        } finally {
+            cut.writeLock().unlock();
+            long pause = System.nanoTime() - start;
+            maxPauseNanos.accumulateAndGet(pause, Math::max);
+        }
+
+        try {
+            state.write(snapshotFile);
+        } catch (IOException e) {
+            System.err.println("Unable to write snapshot " + snapshotFile + ": " + e.getMessage());
+            return;
+        }
+        snapshotSequence = state.getSequence();
+        if (journal != null) {
+            journal.discard(state.getSequence());
+        }
+    }
+
+    /**
+     * Takes a snapshot and exports the state, measuring how long it takes.
+     */
+    public void flush() {
+        long start = System.nanoTime();
+        snapshot();
+        export();
+        long duration = System.nanoTime() - start;
+        flushes.incrementAndGet();
+        flushNanos.addAndGet(duration);
+        maxFlushNanos.accumulateAndGet(duration, Math::max);
+        lastFlushNanos = duration;
+    }
+
+    /**
+     * Writes the inventory and statistics to their JSON files, as a readable export of the state.
+     */
+    public void export() {
+        lock();
+        try {
+            restaurant.getIngredientManager().backup();
+            restaurant.getStatistics().backup();
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * Waits for a flush in progress, makes a final flush and closes the journal.
+     */
+    public void close() {
+        snapshotter.shutdown();
+        try {
+            if (!snapshotter.awaitTermination(CLOSE_TIMEOUT, TimeUnit.SECONDS)) {
+                System.err.println("A background flush did not finish in time, flushing anyway");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.err.println("Unable to close the journal: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the number of flushes made.
+     *
+     * @return the number of flushes.
+     */
+    public long getFlushes() {
+        return flushes.get();
+    }
+
+    /**
+     * Returns the duration of the last flush.
+     *
+     * @return the duration, in nanoseconds, or 0 if no flush was made.
+     */
+    public long getLastFlushNanos() {
+        return lastFlushNanos;
+    }
+
+    /**
+     * Returns the mean duration of flushes.
+     *
+     * @return the mean duration, in nanoseconds, or 0 if no flush was made.
+     */
+    public long getMeanFlushNanos() {
+        long count = flushes.get();
+        return count == 0 ? 0 : flushNanos.get() / count;
+    }
+
+    /**
+     * Returns the duration of the longest flush.
+     *
+     * @return the duration, in nanoseconds.
+     */
+    public long getMaxFlushNanos() {
+        return maxFlushNanos.get();
+    }
+
+    /**
+     * Returns the longest time changes were held off while the state was captured for a snapshot.
+     *
+     * @return the duration, in nanoseconds.
+     */
+    public long getMaxPauseNanos() {
+        return maxPauseNanos.get();
+    }
+
+    /**
+     * Returns the underlying journal, e.g. for its metrics.
+     *
+     * @return the Journal, or null if it could not be opened.
+     */
+    public Journal getJournal() {
+        return journal;
+    }
+}
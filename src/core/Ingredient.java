@@ -1,16 +1,25 @@
 package core;
 
+import util.Money;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+
 /**
  * Represents individual ingredients with the updateUsage of enums (bundled constants).
  */
 public class Ingredient implements Comparable<Ingredient> {
 	private String displayName; // Name displayed to customers
-	private double additionPrice; // Price as an extra addition
-	private int amount; // Current stock
-	private int reserved = 0; //The amount of the ingredient that is reserved for pending orders
+	private long additionPrice; // Price in cents as an extra addition
+	private volatile int amount; // Current stock
+	private volatile int reserved = 0; //The amount of the ingredient that is reserved for pending orders
 	private int threshold; // Minimum threshold to re-order
 	private boolean addable; // If it can be added as extra to orders
 	private int usage; // Amount used from program start
+	private final UsageCounter recentUsage = new UsageCounter(); // Amount used per minute, hour and day
+	private int id = -1; // Dense id assigned by the IngredientRegistry
+	private final CopyOnWriteArrayList<InventoryListener> listeners = new CopyOnWriteArrayList<>(); // Stock listeners
+	private final ReentrantLock lock = new ReentrantLock(); // Guards changes to the amount and reserved stock
 
 	/**
 	 * Creates a new ingredient with the specified attributes.
@@ -35,7 +44,7 @@ public class Ingredient implements Comparable<Ingredient> {
 		}
 
 		this.displayName = displayName;
-		this.additionPrice = additionPrice;
+		this.additionPrice = Money.fromDouble(additionPrice);
 		this.amount = amount;
 		this.threshold = threshold;
 		this.addable = addable;
@@ -48,7 +57,64 @@ public class Ingredient implements Comparable<Ingredient> {
 	 * @param amount the amount being removed from an ingredient's current amount.
 	 */
 	public void update(int amount) {
-		this.amount -= amount;
+		lock.lock();
+		try {
+			this.amount -= amount;
+		} finally {
+			lock.unlock();
+		}
+		changed();
+	}
+
+	/**
+	 * Acquires the lock guarding this ingredient's stock. Used to change the stock of several ingredients
+	 * atomically; locks must always be acquired in a fixed order across ingredients.
+	 */
+	void lock() {
+		lock.lock();
+	}
+
+	/**
+	 * Releases the lock guarding this ingredient's stock.
+	 */
+	void unlock() {
+		lock.unlock();
+	}
+
+	/**
+	 * Registers a listener to be notified whenever the stock of this ingredient changes.
+	 *
+	 * @param listener an InventoryListener.
+	 */
+	public void addListener(InventoryListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Notifies all listeners that the stock of this ingredient has changed.
+	 */
+	private void changed() {
+		for (InventoryListener listener : listeners) {
+			listener.amountChanged(this);
+		}
+	}
+
+	/**
+	 * Returns the dense id of this ingredient, assigned when it is registered.
+	 *
+	 * @return the id, or -1 if the ingredient is not registered.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Sets the dense id of this ingredient.
+	 *
+	 * @param id the id.
+	 */
+	void setId(int id) {
+		this.id = id;
 	}
 
 	/**
@@ -72,9 +138,9 @@ public class Ingredient implements Comparable<Ingredient> {
 	/**
 	 * Returns the price of adding the ingredient as an addition to a menu order.
 	 *
-	 * @return a int representing the price of adding the item to a menu order.
+	 * @return the price in cents of adding the item to a menu order.
 	 */
-	public double getAdditionPrice() {
+	public long getAdditionPrice() {
 		return additionPrice;
 	}
 
@@ -103,7 +169,28 @@ public class Ingredient implements Comparable<Ingredient> {
 	 * @param amount the amount to increase the ingredient's current stock by.
 	 */
 	public void addAmount(int amount) {
-		this.amount += amount;
+		lock.lock();
+		try {
+			this.amount += amount;
+		} finally {
+			lock.unlock();
+		}
+		changed();
+	}
+
+	/**
+	 * Sets the amount of the ingredient in stock, e.g. when restoring a snapshot.
+	 *
+	 * @param amount the ingredient's stock.
+	 */
+	void setAmount(int amount) {
+		lock.lock();
+		try {
+			this.amount = amount;
+		} finally {
+			lock.unlock();
+		}
+		changed();
 	}
 
 	/**
@@ -122,8 +209,13 @@ public class Ingredient implements Comparable<Ingredient> {
 	 *
 	 * @param usage updateUsage ingredient that many times
 	 */
-	public synchronized void updateUsage(int usage) {
-		this.usage += usage;
+	public void updateUsage(int usage) {
+		synchronized (this) {
+			this.usage += usage;
+		}
+		for (InventoryListener listener : listeners) {
+			listener.usageRecorded(this, usage);
+		}
 	}
 
 	/**
@@ -131,8 +223,14 @@ public class Ingredient implements Comparable<Ingredient> {
 	 *
 	 * @param amount the amount being removed from an ingredient's current amount.
 	 */
-	public synchronized void use(int amount) {
-		this.amount -= amount;
+	public void use(int amount) {
+		lock.lock();
+		try {
+			this.amount -= amount;
+		} finally {
+			lock.unlock();
+		}
+		changed();
 	}
 
 
@@ -141,9 +239,15 @@ public class Ingredient implements Comparable<Ingredient> {
 	 *
 	 * @param amount the amount of an ingredient to be reserved.
 	 */
-	public synchronized void reserve(int amount) {
-		this.reserved += amount;
-		this.amount -= amount;
+	public void reserve(int amount) {
+		lock.lock();
+		try {
+			this.reserved += amount;
+			this.amount -= amount;
+		} finally {
+			lock.unlock();
+		}
+		changed();
 	}
 
 	/**
@@ -164,6 +268,15 @@ public class Ingredient implements Comparable<Ingredient> {
 		return usage;
 	}
 
+	/**
+	 * Returns the amount of the ingredient used recently, per minute, hour and day.
+	 *
+	 * @return a UsageCounter.
+	 */
+	public UsageCounter getRecentUsage() {
+		return recentUsage;
+	}
+
 	/**
 	 * Compares two ingredients, used for sorting.
 	 *
@@ -4,27 +4,32 @@ import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
+import util.AtomicFile;
 import util.Log;
+import util.Money;
 
 import java.io.*;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A manager for ingredients.
  */
 public class IngredientManager {
     private final ArrayList<Ingredient> ingredients;//All the ingredients currently in inventory
+    private final IngredientRegistry registry; // Assigns each ingredient a dense id
     /**
      * the default amount to reorder
      */
     public static final int DEFAULT_ORDER_AMOUNT = 20;
-    private final HashMap<Ingredient, Integer> reorders; // Current re-orders; used to write to requests.txt
+    private final ConcurrentHashMap<Ingredient, Integer> reorders; // Current re-orders; written to requests.txt
     private final File requests; // The requests file
     private Statistics statistics; // The statistics file
     private Restaurant res; // The restaurant for this IngredientManager
+    private final ReorderEngine reorderEngine; // Plans re-order points and quantities from usage
+    private final ThresholdMonitor thresholdMonitor; // Monitors ingredient thresholds for re-orders
 
     /**
      * Constructs an IngredientManager.
@@ -35,7 +40,8 @@ public class IngredientManager {
      */
     public IngredientManager(File ingredientsFile, File requests, Restaurant res) {
         ingredients = new ArrayList<>();
-        reorders = new HashMap<>();
+        registry = new IngredientRegistry();
+        reorders = new ConcurrentHashMap<>();
         this.res = res;
         this.requests = requests;
         File backup = new File("resources/data/inventory.json");
@@ -49,9 +55,29 @@ public class IngredientManager {
             e.printStackTrace();
         }
 
+        reorderEngine = new ReorderEngine(registry);
+        thresholdMonitor = new ThresholdMonitor(this, res);
         backup();
     }
 
+    /**
+     * Returns the engine planning re-order points and quantities.
+     *
+     * @return a ReorderEngine.
+     */
+    public ReorderEngine getReorderEngine() {
+        return reorderEngine;
+    }
+
+    /**
+     * Returns the monitor of ingredient thresholds.
+     *
+     * @return a ThresholdMonitor.
+     */
+    public ThresholdMonitor getThresholdMonitor() {
+        return thresholdMonitor;
+    }
+
     /**
      * Set statistics to update the manager
      *
@@ -62,6 +88,15 @@ public class IngredientManager {
     }
 
 
+    /**
+     * Returns the registry assigning ingredients their ids.
+     *
+     * @return an IngredientRegistry.
+     */
+    public IngredientRegistry getRegistry() {
+        return registry;
+    }
+
     /**
      * Gets the list of ingredients.
      *
@@ -72,64 +107,136 @@ public class IngredientManager {
     }
 
     /**
-     * Returns if an order can be ordered based on ingredient amounts present in inventory.
+     * Reserves every ingredient of a demand vector if all of them have enough stock, or none of them. The
+     * ingredients are locked in id order, so that concurrent reservations can never deadlock.
      *
-     * @param order an order.
-     * @return true if an order can be ordered, false otherwise.
+     * @param needed the demand vector.
+     * @return true if the ingredients were reserved, false if one of them did not have enough stock.
      */
-    private boolean canOrder(Order order) {
-        this.res.checkThresholds();
-        return order.getAllIngredients().entrySet().stream().allMatch((entry) ->
-                entry.getKey().getAmount() >= entry.getValue());
+    static boolean reserve(IngredientVector needed) {
+        for (int i = 0; i < needed.size(); i++) {
+            needed.ingredient(i).lock();
+        }
+        try {
+            for (int i = 0; i < needed.size(); i++) {
+                if (needed.ingredient(i).getAmount() < needed.amount(i)) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < needed.size(); i++) {
+                needed.ingredient(i).reserve(needed.amount(i));
+            }
+            return true;
+        } finally {
+            for (int i = needed.size() - 1; i >= 0; i--) {
+                needed.ingredient(i).unlock();
+            }
+        }
     }
 
-
     /**
-     * Returns if an order is put into pending orders.
+     * Returns if an order is put into pending orders. All of the order's ingredients are reserved atomically: either
+     * every ingredient has enough stock and all of them are reserved, or nothing is reserved.
      *
      * @param order an order
      * @return true if an order is reserved, i.e. put into pending queues, false otherwise
      */
     public boolean reserve(Order order) {
-        if (canOrder(order)) {
-            Log.log(this.res, String.format("Ingredients reserved: %s", order.getAllIngredients()));
-            order.getAllIngredients().forEach(Ingredient::reserve);
-            statistics.updateManagerInventory();
-            backup();
-            this.res.checkThresholds();
-            return true;
-        } else {
-            return false;
+        IngredientVector needed = order.getIngredients();
+
+        res.getJournal().lock();
+        try {
+            if (!reserve(needed)) {
+                return false;
+            }
+            res.getJournal().reserved(needed);
+        } finally {
+            res.getJournal().unlock();
         }
+
+        Log.log(this.res, String.format("Ingredients reserved: %s", needed));
+        statistics.updateManagerInventory();
+        this.res.checkThresholds();
+        return true;
     }
 
     /**
-     * Returns if an order can be cooked based on ingredient amount in inventory.
+     * Takes a consistent snapshot of the whole inventory.
+     *
+     * @return an InventorySnapshot of every ingredient.
+     */
+    public InventorySnapshot snapshot() {
+        return InventorySnapshot.of(registry);
+    }
+
+    /**
+     * Takes a consistent snapshot of the ingredients of a demand vector.
+     *
+     * @param demand the demand vector.
+     * @return an InventorySnapshot of the vector's ingredients.
+     */
+    public InventorySnapshot snapshot(IngredientVector demand) {
+        return InventorySnapshot.of(demand);
+    }
+
+    /**
+     * Returns if there is enough stock to place an order. This is read-only: it performs no I/O and does not
+     * evaluate thresholds.
+     *
+     * @param order an order
+     * @return true if the order can be placed, false otherwise.
+     */
+    public boolean canOrder(Order order) {
+        return snapshot(order.getIngredients()).canOrder(order.getIngredients());
+    }
+
+    /**
+     * Returns if an order can be cooked based on the ingredients reserved. This is read-only: it performs no I/O
+     * and does not evaluate thresholds.
      *
      * @param order an order
      * @return true if an order can be cooked, false otherwise.
      */
     public boolean canCook(Order order) {
-        this.res.checkThresholds();
-        return order.getAllIngredients().entrySet().stream().allMatch((entry) ->
-                entry.getKey().getReserved() >= entry.getValue());
+        return snapshot(order.getIngredients()).canCook(order.getIngredients());
     }
 
     /**
-     * Returns if an order is being cooked.
+     * Returns if an order is being cooked. The reserved ingredients are checked and used atomically; thresholds
+     * are evaluated once afterwards.
      *
      * @param order an order
      * @return true if an order will be cooked, false otherwise.
      */
     public boolean cook(Order order) {
-        this.res.checkThresholds();
-        if (canCook(order)) {
-            Log.log(this.res, String.format("Ingredients used: %s", order.getAllIngredients()));
-            order.getAllIngredients().forEach(Ingredient::use);
-            return true;
-        } else {
-            return false;
+        IngredientVector needed = order.getIngredients();
+        res.getJournal().lock();
+        try {
+            for (int i = 0; i < needed.size(); i++) {
+                needed.ingredient(i).lock();
+            }
+            try {
+                for (int i = 0; i < needed.size(); i++) {
+                    if (needed.ingredient(i).getReserved() < needed.amount(i)) {
+                        return false;
+                    }
+                }
+                for (int i = 0; i < needed.size(); i++) {
+                    needed.ingredient(i).use(needed.amount(i));
+                }
+            } finally {
+                for (int i = needed.size() - 1; i >= 0; i--) {
+                    needed.ingredient(i).unlock();
+                }
+            }
+            res.getJournal().cooked(order);
+        } finally {
+            res.getJournal().unlock();
         }
+
+        Log.log(this.res, String.format("Ingredients used: %s", needed));
+        this.res.checkThresholds();
+        return true;
     }
 
     /**
@@ -152,7 +259,14 @@ public class IngredientManager {
                 int threshold = ((Long) ingredientObject.get("threshold")).intValue();
                 boolean addable = (boolean) ingredientObject.get("addable");
 
-                ingredients.add(new Ingredient(displayName, additionPrice, initialAmount, threshold, addable));
+                Ingredient ingredient = new Ingredient(displayName, additionPrice, initialAmount, threshold, addable);
+                try {
+                    registry.register(ingredient);
+                } catch (IllegalArgumentException e) {
+                    System.err.println(e.getMessage() + ", ignoring the duplicate");
+                    continue;
+                }
+                ingredients.add(ingredient);
             }
         } catch (ParseException | IOException e) {
             e.printStackTrace();
@@ -160,25 +274,26 @@ public class IngredientManager {
     }
 
     /**
-     * Gets a particular ingredient from the list.
+     * Gets a particular ingredient by name.
      *
      * @param ingredient the name of the ingredient to get.
-     * @return the specified ingredient if it exists; null otherwise.
+     * @return the specified ingredient.
+     * @throws UnknownIngredientException if no ingredient has the name.
      */
-    public Ingredient getIngredient(String ingredient) {
-        Optional<Ingredient> t = ingredients.stream().filter(a -> a.getDisplayName().equals(ingredient)).findFirst();
-
-        if (t.isPresent()) {
-            return t.get();
-        } else {
-            System.err.println("Invalid type of ingredient " + ingredient + System.lineSeparator() +
-                    "Valid Types are:");
-            ingredients.forEach(a -> System.err.println("\t" + a.getDisplayName()));
-            new Exception().printStackTrace();
-            System.exit(1);
-        }
+    public Ingredient getIngredient(String ingredient) throws UnknownIngredientException {
+        return registry.get(ingredient);
+    }
 
-        return null;
+    /**
+     * Resolves a whole recipe of ingredient names to ingredients.
+     *
+     * @param recipe the amount of each ingredient, by name.
+     * @return the amount of each ingredient.
+     * @throws UnknownIngredientException naming every unknown ingredient in the recipe.
+     */
+    public HashMap<Ingredient, Integer> resolve(Map<String, ? extends Number> recipe)
+            throws UnknownIngredientException {
+        return registry.resolve(recipe);
     }
 
 
@@ -193,29 +308,54 @@ public class IngredientManager {
     }
 
     /**
-     * Orders an ingredient
+     * Orders an ingredient, in the quantity planned by the ReorderEngine
+     *
+     * @param ingredient to order
+     * @return true if the re-orders changed, false otherwise.
+     */
+    public boolean reorderIngredient(Ingredient ingredient) {
+        return reorderIngredient(ingredient, reorderEngine.getOrderQuantity(ingredient));
+    }
+
+    /**
+     * Orders a quantity of an ingredient
      *
      * @param ingredient to order
+     * @param quantity   the quantity to order
+     * @return true if the re-orders changed, false otherwise.
      */
-    public void reorderIngredient(Ingredient ingredient) {
-        reorders.put(ingredient, DEFAULT_ORDER_AMOUNT);
+    public boolean reorderIngredient(Ingredient ingredient, int quantity) {
+        Integer previous = reorders.put(ingredient, quantity);
+        return previous == null || previous != quantity;
+    }
+
+    /**
+     * Returns the quantity of an ingredient currently being re-ordered.
+     *
+     * @param ingredient the ingredient
+     * @return the quantity, or 0 if the ingredient is not being re-ordered.
+     */
+    public int getReorderQuantity(Ingredient ingredient) {
+        return reorders.getOrDefault(ingredient, 0);
     }
 
     /**
      * Removes an ingredient from the re-order map
      *
      * @param ingredient to un-reorder
+     * @return true if the re-orders changed, false otherwise.
      */
-    public void removeReorderIngredient(Ingredient ingredient) {
-        reorders.remove(ingredient);
+    public boolean removeReorderIngredient(Ingredient ingredient) {
+        return reorders.remove(ingredient) != null;
     }
 
     /**
-     * Updates the request.txt file to use the file with new shipment orders.
+     * Updates the request.txt file to use the file with new shipment orders, from a copy of the current re-orders.
      */
     public void updateRequestsFile() {
+        HashMap<Ingredient, Integer> current = new HashMap<>(reorders);
         try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(requests, false)))) {
-            for (Map.Entry<Ingredient, Integer> entry : reorders.entrySet()) {
+            for (Map.Entry<Ingredient, Integer> entry : current.entrySet()) {
                 out.println(entry.getKey().getDisplayName() + "|" + entry.getValue());
             }
             out.flush();
@@ -251,7 +391,8 @@ public class IngredientManager {
     }
 
     /**
-     * Backups the Ingredient inventory
+     * Backups the Ingredient inventory. Called by the restaurant's EventJournal when it flushes; changes in between
+     * are kept by the journal.
      */
     public void backup() {
         JSONArray data = new JSONArray();
@@ -259,16 +400,16 @@ public class IngredientManager {
             JSONObject obj = new JSONObject();
             obj.put("displayName", item.getDisplayName());
             obj.put("initialAmount", item.getAmount());
-            obj.put("additionPrice", item.getAdditionPrice());
+            obj.put("additionPrice", Money.toDouble(item.getAdditionPrice()));
             obj.put("threshold", item.getThreshold());
             obj.put("addable", item.isAddable());
             data.add(obj);
         }
 
-        try (FileWriter file = new FileWriter("resources/data/inventory.json", false)) {
-            file.write(data.toJSONString());
-        } catch (Exception ignored) {
-
+        try {
+            AtomicFile.write(new File("resources/data/inventory.json"), data.toJSONString());
+        } catch (IOException e) {
+            System.err.println("Unable to back up the inventory: " + e.getMessage());
         }
     }
 }
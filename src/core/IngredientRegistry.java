@@ -0,0 +1,127 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A registry which interns ingredients and assigns each one a dense integer id, so that per-ingredient data can be
+ * kept in plain arrays indexed by id. Ingredients are also indexed by name, so lookups by name are O(1).
+ */
+public class IngredientRegistry {
+    private final ArrayList<Ingredient> byId; // Ingredients indexed by their id
+    private final HashMap<String, Ingredient> byName; // Ingredients indexed by their display name
+
+    /**
+     * Creates an empty IngredientRegistry.
+     */
+    public IngredientRegistry() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty IngredientRegistry sized for a number of ingredients, e.g. a large supplier catalog.
+     *
+     * @param expected the expected number of ingredients.
+     */
+    public IngredientRegistry(int expected) {
+        byId = new ArrayList<>(expected);
+        byName = new HashMap<>(Math.max(16, (int) (expected / 0.75f) + 1));
+    }
+
+    /**
+     * Registers an ingredient, assigning it the next free id.
+     *
+     * @param ingredient the ingredient to register.
+     * @return the ingredient's id.
+     * @throws IllegalArgumentException if another ingredient is already registered under the same name.
+     */
+    public synchronized int register(Ingredient ingredient) {
+        if (ingredient.getId() >= 0) {
+            return ingredient.getId();
+        }
+
+        Ingredient existing = byName.putIfAbsent(ingredient.getDisplayName(), ingredient);
+        if (existing != null) {
+            throw new IllegalArgumentException("Duplicate ingredient " + ingredient.getDisplayName());
+        }
+
+        ingredient.setId(byId.size());
+        byId.add(ingredient);
+        return ingredient.getId();
+    }
+
+    /**
+     * Gets the ingredient with a particular name.
+     *
+     * @param name the display name of the ingredient.
+     * @return the ingredient.
+     * @throws UnknownIngredientException if no ingredient has the name.
+     */
+    public synchronized Ingredient get(String name) throws UnknownIngredientException {
+        Ingredient ingredient = byName.get(name);
+        if (ingredient == null) {
+            throw new UnknownIngredientException(name);
+        }
+        return ingredient;
+    }
+
+    /**
+     * Returns if an ingredient with a particular name is registered.
+     *
+     * @param name the display name of the ingredient.
+     * @return true if the ingredient exists, false otherwise.
+     */
+    public synchronized boolean contains(String name) {
+        return byName.containsKey(name);
+    }
+
+    /**
+     * Resolves a whole recipe of ingredient names to ingredients in one call.
+     *
+     * @param recipe the amount of each ingredient, by display name.
+     * @return the amount of each ingredient.
+     * @throws UnknownIngredientException naming every name in the recipe that no ingredient has.
+     */
+    public synchronized HashMap<Ingredient, Integer> resolve(Map<String, ? extends Number> recipe)
+            throws UnknownIngredientException {
+        HashMap<Ingredient, Integer> resolved = new HashMap<>(Math.max(16, (int) (recipe.size() / 0.75f) + 1));
+        ArrayList<String> unknown = null;
+
+        for (Map.Entry<String, ? extends Number> entry : recipe.entrySet()) {
+            Ingredient ingredient = byName.get(entry.getKey());
+            if (ingredient == null) {
+                if (unknown == null) {
+                    unknown = new ArrayList<>();
+                }
+                unknown.add(entry.getKey());
+            } else {
+                resolved.merge(ingredient, entry.getValue().intValue(), Integer::sum);
+            }
+        }
+
+        if (unknown != null) {
+            throw new UnknownIngredientException(unknown);
+        }
+        return resolved;
+    }
+
+    /**
+     * Gets the ingredient with a particular id.
+     *
+     * @param id the id of the ingredient.
+     * @return the ingredient.
+     */
+    public Ingredient get(int id) {
+        return byId.get(id);
+    }
+
+    /**
+     * Returns the number of registered ingredients. Every id is less than this number.
+     *
+     * @return the number of ingredients.
+     */
+    public int size() {
+        return byId.size();
+    }
+}
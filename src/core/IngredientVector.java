@@ -0,0 +1,198 @@
+package core;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable vector of ingredient amounts, stored as primitive arrays sorted by ingredient id. Entries with an
+ * amount of zero are dropped.
+ */
+public final class IngredientVector {
+    /**
+     * An empty vector.
+     */
+    public static final IngredientVector EMPTY = new IngredientVector(new Ingredient[0], new int[0]);
+
+    private final Ingredient[] ingredients; // The ingredients, sorted by id
+    private final int[] ids; // The id of each ingredient
+    private final int[] amounts; // The amount of each ingredient
+
+    /**
+     * Creates an IngredientVector from arrays sorted by ingredient id.
+     *
+     * @param ingredients the ingredients.
+     * @param amounts     the amount of each ingredient.
+     */
+    private IngredientVector(Ingredient[] ingredients, int[] amounts) {
+        this.ingredients = ingredients;
+        this.amounts = amounts;
+        this.ids = new int[ingredients.length];
+        for (int i = 0; i < ingredients.length; i++) {
+            ids[i] = ingredients[i].getId();
+        }
+    }
+
+    /**
+     * Creates an IngredientVector from a map of ingredients and amounts.
+     *
+     * @param map the map of ingredients to amounts; all ingredients must be registered.
+     * @return a new vector.
+     */
+    public static IngredientVector of(Map<Ingredient, Integer> map) {
+        if (map == null || map.isEmpty()) {
+            return EMPTY;
+        }
+
+        Ingredient[] ingredients = map.keySet().toArray(new Ingredient[0]);
+        Arrays.sort(ingredients, (a, b) -> Integer.compare(a.getId(), b.getId()));
+
+        int[] amounts = new int[ingredients.length];
+        for (int i = 0; i < ingredients.length; i++) {
+            amounts[i] = map.get(ingredients[i]);
+        }
+        return compact(ingredients, amounts, ingredients.length);
+    }
+
+    /**
+     * Returns this vector plus the additions, minus the subtractions.
+     *
+     * @param additions    the vector to add.
+     * @param subtractions the vector to subtract.
+     * @return a new vector.
+     */
+    public IngredientVector combine(IngredientVector additions, IngredientVector subtractions) {
+        return merge(merge(this, additions, 1), subtractions, -1);
+    }
+
+    /**
+     * Merges two vectors, with the second one scaled by a sign.
+     *
+     * @param a    the first vector.
+     * @param b    the second vector.
+     * @param sign 1 to add b, -1 to subtract it.
+     * @return a new vector.
+     */
+    private static IngredientVector merge(IngredientVector a, IngredientVector b, int sign) {
+        if (b.size() == 0) {
+            return a;
+        }
+
+        Ingredient[] ingredients = new Ingredient[a.size() + b.size()];
+        int[] amounts = new int[a.size() + b.size()];
+        int i = 0, j = 0, n = 0;
+
+        while (i < a.size() || j < b.size()) {
+            if (j >= b.size() || (i < a.size() && a.ids[i] < b.ids[j])) {
+                ingredients[n] = a.ingredients[i];
+                amounts[n++] = a.amounts[i++];
+            } else if (i >= a.size() || b.ids[j] < a.ids[i]) {
+                ingredients[n] = b.ingredients[j];
+                amounts[n++] = sign * b.amounts[j++];
+            } else {
+                ingredients[n] = a.ingredients[i];
+                amounts[n++] = a.amounts[i++] + sign * b.amounts[j++];
+            }
+        }
+        return compact(ingredients, amounts, n);
+    }
+
+    /**
+     * Creates a vector from the first n entries of sorted arrays, dropping zero amounts.
+     *
+     * @param ingredients the ingredients, sorted by id.
+     * @param amounts     the amounts.
+     * @param n           the number of entries to use.
+     * @return a new vector.
+     */
+    private static IngredientVector compact(Ingredient[] ingredients, int[] amounts, int n) {
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            if (amounts[i] != 0) {
+                ingredients[size] = ingredients[i];
+                amounts[size++] = amounts[i];
+            }
+        }
+        return new IngredientVector(Arrays.copyOf(ingredients, size), Arrays.copyOf(amounts, size));
+    }
+
+    /**
+     * Returns the number of ingredients in this vector.
+     *
+     * @return the number of entries.
+     */
+    public int size() {
+        return ingredients.length;
+    }
+
+    /**
+     * Returns the ingredient of an entry.
+     *
+     * @param i the index of the entry.
+     * @return the ingredient.
+     */
+    public Ingredient ingredient(int i) {
+        return ingredients[i];
+    }
+
+    /**
+     * Returns the ingredient id of an entry.
+     *
+     * @param i the index of the entry.
+     * @return the ingredient id.
+     */
+    public int id(int i) {
+        return ids[i];
+    }
+
+    /**
+     * Returns the amount of an entry.
+     *
+     * @param i the index of the entry.
+     * @return the amount.
+     */
+    public int amount(int i) {
+        return amounts[i];
+    }
+
+    /**
+     * Returns the amount of a particular ingredient in this vector.
+     *
+     * @param ingredient an ingredient.
+     * @return its amount, or 0 if it is not in the vector.
+     */
+    public int amountOf(Ingredient ingredient) {
+        int i = Arrays.binarySearch(ids, ingredient.getId());
+        return i >= 0 ? amounts[i] : 0;
+    }
+
+    /**
+     * Converts this vector to a map of ingredients to amounts.
+     *
+     * @return a new map.
+     */
+    public HashMap<Ingredient, Integer> toMap() {
+        HashMap<Ingredient, Integer> map = new HashMap<>();
+        for (int i = 0; i < ingredients.length; i++) {
+            map.put(ingredients[i], amounts[i]);
+        }
+        return map;
+    }
+
+    /**
+     * Returns a String representation of this vector.
+     *
+     * @return a String listing each ingredient and its amount.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < ingredients.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(ingredients[i]).append('=').append(amounts[i]);
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,22 @@
+package core;
+
+/**
+ * A listener that is notified whenever the stock of an ingredient changes, or its usage is recorded.
+ */
+public interface InventoryListener {
+    /**
+     * Called after the amount in stock or the amount reserved of an ingredient has changed.
+     *
+     * @param ingredient the ingredient that changed.
+     */
+    void amountChanged(Ingredient ingredient);
+
+    /**
+     * Called after usage of an ingredient has been recorded, i.e. once per consumption event.
+     *
+     * @param ingredient the ingredient used.
+     * @param amount     the amount used.
+     */
+    default void usageRecorded(Ingredient ingredient, int amount) {
+    }
+}
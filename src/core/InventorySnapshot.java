@@ -0,0 +1,206 @@
+package core;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A consistent, read-only copy of the stock of some or all ingredients, taken while holding every copied
+ * ingredient's lock. Feasibility questions are answered from the copy alone, so they perform no I/O, trigger no
+ * threshold checks and can be asked concurrently with orders being placed.
+ * <p>
+ * The copy is sized to the ingredients it holds and indexed by their position among them, so a snapshot of one
+ * demand vector costs as much as the vector, not as the whole registry.
+ */
+public final class InventorySnapshot {
+    private final int[] ids; // The id of each copied ingredient, sorted
+    private final int[] amounts; // The amount in stock of each copied ingredient, by position
+    private final int[] reserved; // The amount reserved of each copied ingredient, by position
+
+    /**
+     * Takes a snapshot of the given ingredients. The ingredients must be sorted by id.
+     *
+     * @param ingredients the ingredients to copy, sorted by id.
+     */
+    private InventorySnapshot(Ingredient[] ingredients) {
+        ids = new int[ingredients.length];
+        amounts = new int[ingredients.length];
+        reserved = new int[ingredients.length];
+
+        // Lock the ingredients in id order, the same order IngredientManager.reserve uses, so this cannot deadlock
+        for (Ingredient ingredient : ingredients) {
+            ingredient.lock();
+        }
+        try {
+            for (int i = 0; i < ingredients.length; i++) {
+                ids[i] = ingredients[i].getId();
+                amounts[i] = ingredients[i].getAmount();
+                reserved[i] = ingredients[i].getReserved();
+            }
+        } finally {
+            for (int i = ingredients.length - 1; i >= 0; i--) {
+                ingredients[i].unlock();
+            }
+        }
+    }
+
+    /**
+     * Takes a snapshot of every ingredient in a registry.
+     *
+     * @param registry the registry.
+     * @return the snapshot.
+     */
+    static InventorySnapshot of(IngredientRegistry registry) {
+        int size = registry.size();
+        Ingredient[] ingredients = new Ingredient[size];
+        for (int id = 0; id < size; id++) {
+            ingredients[id] = registry.get(id);
+        }
+        return new InventorySnapshot(ingredients);
+    }
+
+    /**
+     * Takes a snapshot of the ingredients of a demand vector. The snapshot's positions are the vector's.
+     *
+     * @param vector the demand vector.
+     * @return the snapshot.
+     */
+    static InventorySnapshot of(IngredientVector vector) {
+        Ingredient[] ingredients = new Ingredient[vector.size()];
+        for (int i = 0; i < ingredients.length; i++) {
+            ingredients[i] = vector.ingredient(i);
+        }
+        return new InventorySnapshot(ingredients);
+    }
+
+    /**
+     * Returns the amount of an ingredient in stock when the snapshot was taken.
+     *
+     * @param ingredient the ingredient.
+     * @return the amount in stock.
+     * @throws IllegalArgumentException if the ingredient is not part of the snapshot.
+     */
+    public int getAmount(Ingredient ingredient) {
+        return amounts[index(ingredient)];
+    }
+
+    /**
+     * Returns the amount of an ingredient reserved when the snapshot was taken.
+     *
+     * @param ingredient the ingredient.
+     * @return the amount reserved.
+     * @throws IllegalArgumentException if the ingredient is not part of the snapshot.
+     */
+    public int getReserved(Ingredient ingredient) {
+        return reserved[index(ingredient)];
+    }
+
+    /**
+     * Returns if there was enough stock to order a demand vector.
+     *
+     * @param demand the demand vector.
+     * @return true if every ingredient had enough stock.
+     */
+    public boolean canOrder(IngredientVector demand) {
+        for (int i = 0; i < demand.size(); i++) {
+            if (amounts[index(demand, i)] < demand.amount(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns if enough was reserved to cook a demand vector.
+     *
+     * @param demand the demand vector.
+     * @return true if every ingredient had enough reserved.
+     */
+    public boolean canCook(IngredientVector demand) {
+        for (int i = 0; i < demand.size(); i++) {
+            if (reserved[index(demand, i)] < demand.amount(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns if there was enough stock to order all of several demand vectors together, e.g. a whole table's
+     * orders.
+     *
+     * @param demands the demand vectors.
+     * @return true if every ingredient had enough stock for the combined demand.
+     */
+    public boolean canOrderAll(Collection<IngredientVector> demands) {
+        int[] total = new int[amounts.length];
+        for (IngredientVector demand : demands) {
+            for (int i = 0; i < demand.size(); i++) {
+                int position = index(demand, i);
+                total[position] += demand.amount(i);
+                if (amounts[position] < total[position]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns how many times a demand vector could have been ordered.
+     *
+     * @param demand the demand vector.
+     * @return the number of portions, or Integer.MAX_VALUE if the vector is empty.
+     */
+    public int getPortions(IngredientVector demand) {
+        int portions = Integer.MAX_VALUE;
+        for (int i = 0; i < demand.size(); i++) {
+            portions = Math.min(portions, Math.max(0, amounts[index(demand, i)]) / demand.amount(i));
+        }
+        return portions;
+    }
+
+    /**
+     * Returns the position of an entry of a demand vector in the snapshot's arrays. When the snapshot was taken of
+     * the same vector, or of every ingredient, the position is found without searching.
+     *
+     * @param demand the demand vector.
+     * @param i      the index of the entry in the vector.
+     * @return its position.
+     * @throws IllegalArgumentException if the ingredient is not part of the snapshot.
+     */
+    private int index(IngredientVector demand, int i) {
+        int id = demand.id(i);
+        if (i < ids.length && ids[i] == id) {
+            return i;
+        }
+        if (id >= 0 && id < ids.length && ids[id] == id) {
+            return id;
+        }
+        return index(demand.ingredient(i));
+    }
+
+    /**
+     * Returns the position of an ingredient in the snapshot's arrays.
+     *
+     * @param ingredient the ingredient.
+     * @return its position.
+     * @throws IllegalArgumentException if the ingredient is not part of the snapshot.
+     */
+    private int index(Ingredient ingredient) {
+        int position = Arrays.binarySearch(ids, ingredient.getId());
+        if (position < 0) {
+            throw new IllegalArgumentException("Ingredient " + ingredient + " is not part of the snapshot");
+        }
+        return position;
+    }
+
+    /**
+     * Returns a String representation of the snapshot.
+     *
+     * @return the amounts in stock, by position.
+     */
+    @Override
+    public String toString() {
+        return "InventorySnapshot" + Arrays.toString(amounts);
+    }
+}
@@ -9,13 +9,22 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 /**
  * A Menu of dishes. Can return a Menu with items of specific categories.
+ * <p>
+ * Every way of changing the list goes through add, set or remove, which keep the name and tag indexes up to date;
+ * sub-lists are read-only. A reload builds the new items and indexes aside and swaps them in at once, so lookups and
+ * searches see either the old menu or the new one.
  */
 public class Menu extends ArrayList<MenuItem> {
     private Restaurant restaurant;// The Restaurant the menu belongs to
+    private final TagDictionary tagDictionary = new TagDictionary(); // The tags of the menu's items
+    private MenuIndex index = new MenuIndex(); // The menu's items indexed by name
+    private TagIndex tagIndex = new TagIndex(tagDictionary); // The menu's items indexed by tag
 
     /**
      * Creates a menu from a file.
@@ -26,45 +35,116 @@ public class Menu extends ArrayList<MenuItem> {
     public Menu(File file, Restaurant res) {
         super();
         this.restaurant = res;
-        parseMenu(file);
+        JSONArray data = read(file);
+        if (data != null) {
+            addAll(parseMenu(data));
+        }
+    }
+
+    /**
+     * Creates an empty menu without a restaurant, e.g. to be filled with add.
+     */
+    Menu() {
+        super();
     }
 
     /**
-     * Parses a menu from a json file to add ingredients to a the menu.
+     * Reloads the menu from a file, replacing all of its items, and rebuilds what is derived from them: the
+     * statistics and the 86 board, whose listeners are notified last. An item that is still on the menu keeps its
+     * usage. The menu is left as it is if the file cannot be read.
      *
-     * @param file a json file containing menu items. Refer to resources/menu.json for format.
+     * @param file the Json the Menu is built from.
      */
-    private void parseMenu(File file) {
+    public void reload(File file) {
+        JSONArray data = read(file);
+        if (data == null) {
+            return;
+        }
+
+        EventJournal journal = restaurant == null ? null : restaurant.getJournal();
+        if (journal != null) {
+            journal.lock(); // keeps snapshots from seeing a half-replaced menu
+        }
         try {
-            JSONParser parser = new JSONParser();
-            Object obj = parser.parse(new FileReader(file));
-            JSONArray data = (JSONArray) obj;
+            synchronized (this) {
+                tagDictionary.reset();
+                ArrayList<MenuItem> items = parseMenu(data);
+                MenuIndex newIndex = new MenuIndex();
+                TagIndex newTagIndex = new TagIndex(tagDictionary);
+                for (MenuItem item : items) {
+                    MenuItem previous = index.get(item.getName());
+                    if (previous != null) {
+                        item.setUsage(previous.getUsage());
+                        item.getRecentUsage().copy(previous.getRecentUsage());
+                    }
+                    newIndex.add(item);
+                    item.setOrdinal(newTagIndex.add(item));
+                }
 
-            for (Object item : data) {
-                JSONObject dish = (JSONObject) item;
-                String name = (String) dish.get("name");
-                double price = (double) dish.get("price");
+                super.clear();
+                super.addAll(items);
+                index = newIndex;
+                tagIndex = newTagIndex;
+            }
+        } finally {
+            if (journal != null) {
+                journal.unlock();
+            }
+        }
 
-				Object[] tags = ((JSONArray) dish.get("tags")).toArray();
-				ArrayList<String> tagsList = Arrays.stream(tags).map(object ->
-                        Objects.toString(object, null)).collect(Collectors.toCollection(ArrayList::new));
+        if (restaurant != null && restaurant.getStatistics() != null) {
+            restaurant.getStatistics().refresh();
+        }
+        if (restaurant != null && restaurant.getAvailabilityBoard() != null) {
+            restaurant.getAvailabilityBoard().rebuild();
+        }
+    }
 
-                JSONObject ingredients = ((JSONObject) dish.get("ingredients"));
+    /**
+     * Reads a menu file.
+     *
+     * @param file a json file containing menu items. Refer to resources/menu.json for format.
+     * @return the menu items' json, or null if the file cannot be read.
+     */
+    private static JSONArray read(File file) {
+        try (FileReader reader = new FileReader(file)) {
+            return (JSONArray) new JSONParser().parse(reader);
+        } catch (ParseException | IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
 
-                HashMap<Ingredient, Integer> ingredientsMap = new HashMap<>();
+    /**
+     * Parses the menu items of a menu file, without adding them to the menu.
+     *
+     * @param data the menu items' json.
+     * @return the menu items, skipping those with unknown ingredients.
+     */
+    private ArrayList<MenuItem> parseMenu(JSONArray data) {
+        ArrayList<MenuItem> items = new ArrayList<>();
+        for (Object item : data) {
+            JSONObject dish = (JSONObject) item;
+            String name = (String) dish.get("name");
+            double price = (double) dish.get("price");
 
-                ingredients.keySet().stream().forEach(key -> {
-                    String ingredient = (String) key;
-                    int amount = ((Long) ingredients.get(key)).intValue();
-                    Ingredient ing = restaurant.getIngredientManager().getIngredient(ingredient);
-                    ingredientsMap.put(ing, amount);
-                });
+            Object[] tags = ((JSONArray) dish.get("tags")).toArray();
+            ArrayList<String> tagsList = Arrays.stream(tags).map(object ->
+                    Objects.toString(object, null)).collect(Collectors.toCollection(ArrayList::new));
 
-                add(new MenuItem(name, price, ingredientsMap, tagsList));
+            JSONObject ingredients = ((JSONObject) dish.get("ingredients"));
+
+            HashMap<Ingredient, Integer> ingredientsMap;
+            try {
+                ingredientsMap = restaurant.getIngredientManager().resolve(ingredients);
+            } catch (UnknownIngredientException e) {
+                System.err.println(e.getMessage() + " in menu item " + name + ", skipping it");
+                continue;
             }
-        } catch (ParseException | IOException e) {
-            e.printStackTrace();
+
+            items.add(new MenuItem(name, price, ingredientsMap, tagsList, tagDictionary));
         }
+        return items;
     }
 
     /**
@@ -73,15 +153,304 @@ public class Menu extends ArrayList<MenuItem> {
      * @param item the name of the menu item
      * @return a menu item if it exists, or a string otherwise.
      */
-    public MenuItem get(String item) {
-        Optional<MenuItem> menuItem = stream().filter(a -> a.getName().equals(item)).findFirst();
-        if (!menuItem.isPresent()) {
+    public synchronized MenuItem get(String item) {
+        MenuItem menuItem = index.get(item);
+        if (menuItem == null) {
             System.err.println("No such item " + item);
             System.err.println("Please select from the following items:");
             forEach(a -> System.err.println(a.getName()));
-            return null;
         }
-        return menuItem.get();
+        return menuItem;
+    }
+
+    /**
+     * Finds the items with a word in their name that starts with what has been typed so far, ignoring case. Terms
+     * starting with "#" or "-#" are tag clauses instead, e.g. "bur #main -#spicy"; see TagQuery.
+     *
+     * @param text  the text typed so far.
+     * @param limit the maximum number of items to return for a non-blank name prefix.
+     * @return the matching items; every item matching the tags if the name prefix is blank.
+     */
+    public synchronized List<MenuItem> search(String text, int limit) {
+        StringBuilder prefix = new StringBuilder(), tags = new StringBuilder();
+        if (text != null) {
+            for (String term : text.trim().split("\\s+")) {
+                StringBuilder target = term.startsWith("#") || term.startsWith("-#") ? tags : prefix;
+                target.append(target.length() > 0 ? " " : "").append(term);
+            }
+        }
+
+        if (tags.length() == 0) {
+            return prefix.length() == 0 ? new ArrayList<>(this) : index.search(prefix.toString(), limit);
+        }
+        if (prefix.length() == 0) {
+            return filter(tags.toString());
+        }
+
+        BitSet matching = match(TagQuery.parse(tags.toString()));
+        return index.search(prefix.toString(), Integer.MAX_VALUE).stream()
+                .filter(a -> matching.get(a.getOrdinal())).limit(limit).collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the items matching a tag query, e.g. "vegan|vegetarian -spicy".
+     *
+     * @param query the query; see TagQuery.
+     * @return the matching items, in the order they were added to the menu.
+     */
+    public List<MenuItem> filter(String query) {
+        return filter(TagQuery.parse(query));
+    }
+
+    /**
+     * Returns the items matching a tag query.
+     *
+     * @param query the query.
+     * @return the matching items, in the order they were added to the menu.
+     */
+    public synchronized List<MenuItem> filter(TagQuery query) {
+        return tagIndex.items(tagIndex.evaluate(query));
+    }
+
+    /**
+     * Returns the ordinals of the items matching a tag query.
+     *
+     * @param query the query.
+     * @return a BitSet of item ordinals; see MenuItem.getOrdinal.
+     */
+    public synchronized BitSet match(TagQuery query) {
+        return tagIndex.evaluate(query);
+    }
+
+    /**
+     * Returns the item on the menu with the name of an item, which may be an item replaced by a reload.
+     *
+     * @param item the item.
+     * @return the item on the menu, or null if no item of that name is on the menu.
+     */
+    synchronized MenuItem current(MenuItem item) {
+        return index.get(item.getName());
+    }
+
+    /**
+     * Returns the index of the menu's items by tag.
+     *
+     * @return a TagIndex.
+     */
+    public synchronized TagIndex getTagIndex() {
+        return tagIndex;
+    }
+
+    /**
+     * Adds an item to the menu and its indexes.
+     *
+     * @param item the item to add.
+     * @return true.
+     */
+    @Override
+    public boolean add(MenuItem item) {
+        indexItem(item);
+        return super.add(item);
+    }
+
+    /**
+     * Inserts an item into the menu at a position, and adds it to its indexes.
+     *
+     * @param position the position.
+     * @param item     the item to add.
+     */
+    @Override
+    public void add(int position, MenuItem item) {
+        super.add(position, item);
+        indexItem(item);
+    }
+
+    /**
+     * Adds items to the end of the menu and its indexes.
+     *
+     * @param items the items to add.
+     * @return true if any item was added.
+     */
+    @Override
+    public boolean addAll(Collection<? extends MenuItem> items) {
+        for (MenuItem item : items) {
+            add(item);
+        }
+        return !items.isEmpty();
+    }
+
+    /**
+     * Inserts items into the menu at a position, and adds them to its indexes.
+     *
+     * @param position the position of the first item.
+     * @param items    the items to add.
+     * @return true if any item was added.
+     */
+    @Override
+    public boolean addAll(int position, Collection<? extends MenuItem> items) {
+        for (MenuItem item : items) {
+            add(position++, item);
+        }
+        return !items.isEmpty();
+    }
+
+    /**
+     * Replaces the item at a position, in the menu and its indexes.
+     *
+     * @param position the position.
+     * @param item     the new item.
+     * @return the item replaced.
+     */
+    @Override
+    public MenuItem set(int position, MenuItem item) {
+        MenuItem previous = super.set(position, item);
+        unindexItem(previous);
+        indexItem(item);
+        return previous;
+    }
+
+    /**
+     * Replaces every item with the result of an operator, in the menu and its indexes.
+     *
+     * @param operator the operator.
+     */
+    @Override
+    public void replaceAll(UnaryOperator<MenuItem> operator) {
+        for (int i = 0; i < size(); i++) {
+            set(i, operator.apply(get(i)));
+        }
+    }
+
+    /**
+     * Removes an item from the menu and its indexes.
+     *
+     * @param item the item to remove.
+     * @return true if the menu contained the item.
+     */
+    @Override
+    public boolean remove(Object item) {
+        if (item instanceof MenuItem) {
+            unindexItem((MenuItem) item);
+        }
+        return super.remove(item);
+    }
+
+    /**
+     * Removes the item at a position from the menu and its indexes. Iterators remove items through this method.
+     *
+     * @param position the position.
+     * @return the item removed.
+     */
+    @Override
+    public MenuItem remove(int position) {
+        MenuItem item = super.remove(position);
+        unindexItem(item);
+        return item;
+    }
+
+    /**
+     * Removes the items matching a predicate from the menu and its indexes.
+     *
+     * @param filter the predicate.
+     * @return true if any item was removed.
+     */
+    @Override
+    public boolean removeIf(Predicate<? super MenuItem> filter) {
+        boolean removed = false;
+        for (Iterator<MenuItem> iterator = iterator(); iterator.hasNext(); ) {
+            if (filter.test(iterator.next())) {
+                iterator.remove();
+                removed = true;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes the items in a collection from the menu and its indexes.
+     *
+     * @param items the items to remove.
+     * @return true if any item was removed.
+     */
+    @Override
+    public boolean removeAll(Collection<?> items) {
+        return removeIf(items::contains);
+    }
+
+    /**
+     * Removes the items not in a collection from the menu and its indexes.
+     *
+     * @param items the items to keep.
+     * @return true if any item was removed.
+     */
+    @Override
+    public boolean retainAll(Collection<?> items) {
+        return removeIf(a -> !items.contains(a));
+    }
+
+    /**
+     * Removes the items between two positions from the menu and its indexes.
+     *
+     * @param from the position of the first item removed.
+     * @param to   the position after the last item removed.
+     */
+    @Override
+    protected void removeRange(int from, int to) {
+        for (int i = from; i < to; i++) {
+            unindexItem(get(i));
+        }
+        super.removeRange(from, to);
+    }
+
+    /**
+     * Returns a read-only view of part of the menu, since changes through it would bypass the indexes.
+     *
+     * @param from the position of the first item.
+     * @param to   the position after the last item.
+     * @return an unmodifiable list of items.
+     */
+    @Override
+    public List<MenuItem> subList(int from, int to) {
+        return Collections.unmodifiableList(super.subList(from, to));
+    }
+
+    /**
+     * Adds an item to the name and tag indexes, giving it its ordinal.
+     *
+     * @param item the item.
+     */
+    private void indexItem(MenuItem item) {
+        index.add(item);
+        item.setOrdinal(tagIndex.add(item));
+    }
+
+    /**
+     * Removes an item from the name and tag indexes.
+     *
+     * @param item the item.
+     */
+    private void unindexItem(MenuItem item) {
+        index.remove(item);
+        tagIndex.remove(item);
+    }
+
+    /**
+     * Removes every item from the menu and its indexes.
+     */
+    @Override
+    public void clear() {
+        index.clear();
+        tagIndex.clear();
+        super.clear();
+    }
+
+    /**
+     * Returns the dictionary of the menu's tags.
+     *
+     * @return a TagDictionary.
+     */
+    public TagDictionary getTagDictionary() {
+        return tagDictionary;
     }
 
     /**
@@ -0,0 +1,181 @@
+package core;
+
+import java.util.*;
+
+/**
+ * An index of menu items by name. Exact names are looked up in a hash index, and a case-insensitive prefix trie
+ * over the start of every word of an item's name supports search-as-you-type, e.g. "bur" finds "Cheese Burger".
+ */
+public class MenuIndex {
+    /**
+     * A node of the prefix trie.
+     */
+    private static final class Node {
+        private final TreeMap<Character, Node> children = new TreeMap<>(); // Child nodes, in alphabetical order
+        private final LinkedHashSet<MenuItem> items = new LinkedHashSet<>(); // Items whose indexed word ends here
+    }
+
+    private final HashMap<String, MenuItem> byName; // Items indexed by their exact name
+    private Node root; // The root of the prefix trie
+
+    /**
+     * Creates an empty MenuIndex.
+     */
+    public MenuIndex() {
+        byName = new HashMap<>();
+        root = new Node();
+    }
+
+    /**
+     * Adds a menu item to the index.
+     *
+     * @param item the item to add.
+     */
+    public synchronized void add(MenuItem item) {
+        byName.put(item.getName(), item);
+
+        String name = normalize(item.getName());
+        for (int start : wordStarts(name)) {
+            Node node = root;
+            for (int i = start; i < name.length(); i++) {
+                node = node.children.computeIfAbsent(name.charAt(i), k -> new Node());
+            }
+            node.items.add(item);
+        }
+    }
+
+    /**
+     * Removes a menu item from the index.
+     *
+     * @param item the item to remove.
+     */
+    public synchronized void remove(MenuItem item) {
+        byName.remove(item.getName(), item);
+
+        String name = normalize(item.getName());
+        for (int start : wordStarts(name)) {
+            remove(root, name, start, item);
+        }
+    }
+
+    /**
+     * Removes an item from the subtrie of a node, pruning nodes left empty.
+     *
+     * @param node  the node.
+     * @param name  the normalized name of the item.
+     * @param index the index of the next character of the name.
+     * @param item  the item to remove.
+     * @return true if the node is now empty and can be pruned.
+     */
+    private boolean remove(Node node, String name, int index, MenuItem item) {
+        if (index == name.length()) {
+            node.items.remove(item);
+        } else {
+            Node child = node.children.get(name.charAt(index));
+            if (child != null && remove(child, name, index + 1, item)) {
+                node.children.remove(name.charAt(index));
+            }
+        }
+        return node.items.isEmpty() && node.children.isEmpty();
+    }
+
+    /**
+     * Removes every item from the index.
+     */
+    public synchronized void clear() {
+        byName.clear();
+        root = new Node();
+    }
+
+    /**
+     * Gets an item by its exact name.
+     *
+     * @param name the name of the item.
+     * @return the item, or null if there is no such item.
+     */
+    public synchronized MenuItem get(String name) {
+        return byName.get(name);
+    }
+
+    /**
+     * Finds the items with a word in their name that starts with a prefix, ignoring case.
+     *
+     * @param prefix the prefix typed so far.
+     * @param limit  the maximum number of items to return.
+     * @return the matching items, ordered alphabetically by the matching word.
+     */
+    public synchronized ArrayList<MenuItem> search(String prefix, int limit) {
+        String key = normalize(prefix);
+        LinkedHashSet<MenuItem> found = new LinkedHashSet<>();
+
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.children.get(key.charAt(i));
+        }
+        if (node != null) {
+            collect(node, found, limit);
+        }
+        return new ArrayList<>(found);
+    }
+
+    /**
+     * Collects the items of a subtrie in alphabetical order.
+     *
+     * @param node  the root of the subtrie.
+     * @param found the items found so far.
+     * @param limit the maximum number of items to collect.
+     */
+    private void collect(Node node, LinkedHashSet<MenuItem> found, int limit) {
+        for (MenuItem item : node.items) {
+            if (found.size() >= limit) {
+                return;
+            }
+            found.add(item);
+        }
+        for (Node child : node.children.values()) {
+            if (found.size() >= limit) {
+                return;
+            }
+            collect(child, found, limit);
+        }
+    }
+
+    /**
+     * Returns the number of items in the index.
+     *
+     * @return the number of items.
+     */
+    public synchronized int size() {
+        return byName.size();
+    }
+
+    /**
+     * Normalizes a name for the trie.
+     *
+     * @param name a name.
+     * @return the name, trimmed and in lower case.
+     */
+    private static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the indexes at which the words of a name start.
+     *
+     * @param name a normalized name.
+     * @return the start index of each word.
+     */
+    private static ArrayList<Integer> wordStarts(String name) {
+        ArrayList<Integer> starts = new ArrayList<>();
+        for (int i = 0; i < name.length(); i++) {
+            boolean wordStart = i == 0 || !Character.isLetterOrDigit(name.charAt(i - 1));
+            if (wordStart && Character.isLetterOrDigit(name.charAt(i))) {
+                starts.add(i);
+            }
+        }
+        if (starts.isEmpty()) {
+            starts.add(0);
+        }
+        return starts;
+    }
+}
@@ -1,6 +1,9 @@
 package core;
 
+import util.Money;
+
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 
 /**
@@ -9,8 +12,13 @@ import java.util.HashMap;
 public class MenuItem implements Comparable<MenuItem> {
 	private String name; // Serves as both reference (system) and display name
 	private HashMap<Ingredient, Integer> baseIngredients;// the base ingredients for a menu item
-	private double basePrice;// the base price
+	private IngredientVector demand; // the base ingredients, compiled to a primitive vector
+	private long basePrice;// the base price, in cents
+	private ArrayList<String> tags; // tags describing the dish
+	private BitSet tagSet; // the tags, interned as a shared bit set
+	private int ordinal = -1; // the item's position in its menu's tag index
 	private int usage; // The number of times the item was ordered (for stats)
+	private final UsageCounter recentUsage = new UsageCounter(); // The number of orders per minute, hour and day
 
 
 	/**
@@ -20,11 +28,16 @@ public class MenuItem implements Comparable<MenuItem> {
 	 * @param basePrice       price of the dish without any additions.
 	 * @param baseIngredients ingredients required to prepare the dish.
 	 * @param tags            tags describing the dish.
+	 * @param dictionary      the dictionary to intern the tags in.
 	 */
-	MenuItem(String name, double basePrice, HashMap<Ingredient, Integer> baseIngredients, ArrayList<String> tags) {
-		this.basePrice = basePrice;
+	MenuItem(String name, double basePrice, HashMap<Ingredient, Integer> baseIngredients, ArrayList<String> tags,
+			 TagDictionary dictionary) {
+		this.basePrice = Money.fromDouble(basePrice);
 		this.name = name;
 		this.baseIngredients = baseIngredients;
+		this.demand = IngredientVector.of(baseIngredients);
+		this.tags = tags;
+		this.tagSet = dictionary.intern(tags);
 		this.usage = 0;
 	}
 
@@ -35,9 +48,9 @@ public class MenuItem implements Comparable<MenuItem> {
 	/**
 	 * Returns the price of the item without any additions.
 	 *
-	 * @return base price of an item.
+	 * @return base price of an item, in cents.
 	 */
-	public double getBasePrice() {
+	public long getBasePrice() {
 		return basePrice;
 	}
 
@@ -59,6 +72,52 @@ public class MenuItem implements Comparable<MenuItem> {
 		return baseIngredients;
 	}
 
+	/**
+	 * Returns the ingredients to prepare an item as a primitive vector.
+	 *
+	 * @return the item's demand vector.
+	 */
+	public IngredientVector getDemand() {
+		return demand;
+	}
+
+	/**
+	 * Returns the tags describing the dish.
+	 *
+	 * @return list of tags.
+	 */
+	public ArrayList<String> getTags() {
+		return tags;
+	}
+
+	/**
+	 * Returns the tags describing the dish as an interned bit set. The set is shared and must not be modified.
+	 *
+	 * @return the item's tag set.
+	 */
+	public BitSet getTagSet() {
+		return tagSet;
+	}
+
+	/**
+	 * Returns the ordinal of the item in its menu's tag index. Unlike its position in the menu, the ordinal does
+	 * not change when the menu is sorted.
+	 *
+	 * @return the ordinal, or -1 if the item is not on a menu.
+	 */
+	public int getOrdinal() {
+		return ordinal;
+	}
+
+	/**
+	 * Sets the ordinal of the item in its menu's tag index.
+	 *
+	 * @param ordinal the ordinal.
+	 */
+	void setOrdinal(int ordinal) {
+		this.ordinal = ordinal;
+	}
+
 
 	/**
 	 * Increases the usage of the MenuItem by 1.
@@ -76,6 +135,15 @@ public class MenuItem implements Comparable<MenuItem> {
 		return usage;
 	}
 
+	/**
+	 * Returns the number of times the MenuItem was ordered recently, per minute, hour and day.
+	 *
+	 * @return a UsageCounter.
+	 */
+	public UsageCounter getRecentUsage() {
+		return recentUsage;
+	}
+
 	/**
 	 * Compares the Usage of this instance of MenuItem with another MenuItem.
 	 *
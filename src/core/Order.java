@@ -1,26 +1,42 @@
 package core;
 
+import util.IdGenerator;
 import visual.gui.Cook;
 import visual.gui.Server;
 
+import java.io.File;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * Represents an order, containing one item.
+ * <p>
+ * An order moves through its states ordered, received, cooked and delivered in that order, and can be cancelled
+ * from any of them. Each move is a compare-and-set of the state, so when several terminals act on the same order
+ * only one of them can make a given move, and moves out of order are rejected. The time of each move is recorded,
+ * from System.nanoTime, for measuring service times.
  */
 public class Order implements Comparable {
     private MenuItem item; // The order's item
     private HashMap<Ingredient, Integer> additions;// A list of added ingredients
     private HashMap<Ingredient, Integer> subtractions; // A list of subtracted ingredients
+    private final IngredientVector ingredients; // All the ingredients used, computed once
+    private final long price; // The price of the order in cents, fixed when it is created
 
     private Table table; // Table that the order belongs to
     private int seatNumber; // Seat number at that table
     private Cook cook; // Assigned cook
     private final Server server; // Assigned server
 
-    private int state; // See below for possible states
-    private static int orderNumberCounter = 10000; // the order number tracker
+    private final AtomicInteger state = new AtomicInteger(ORDER_ORDERED); // See below for possible states
+    private final AtomicLongArray entered = new AtomicLongArray(ORDER_CANCELLED + 1); // When each state was entered
+    private static final IdGenerator orderNumbers = new IdGenerator(new File("resources/data/order_numbers.txt"),
+            10000, 16); // hands out order numbers, unique across restarts
     private int orderNumber; // the order number
+    private OrderStore store; // the store indexing this order, if any
+    private boolean remake = false; // if this order remakes a returned order
 
 
     // Represents different states of an order (to avoid hardcoding).
@@ -49,12 +65,18 @@ public class Order implements Comparable {
         this.item = item;
         this.additions = additions;
         this.subtractions = subtractions;
+        this.ingredients = item.getDemand().combine(IngredientVector.of(additions), IngredientVector.of(subtractions));
+        long price = item.getBasePrice();
+        for (Map.Entry<Ingredient, Integer> entry : additions.entrySet()) {
+            price += entry.getKey().getAdditionPrice() * entry.getValue();
+        }
+        this.price = price;
         this.table = table;
         this.seatNumber = seatNumber;
-        this.orderNumber = orderNumberCounter++;
+        this.orderNumber = orderNumbers.nextInt();
         this.server = server;
         table.setServer(server);
-        state = ORDER_ORDERED;
+        entered.set(ORDER_ORDERED, System.nanoTime());
     }
 
     /**
@@ -62,20 +84,27 @@ public class Order implements Comparable {
      * @return a new order.
      */
     public Order cloneNew() {
-        return new Order(this.item, this.additions, this.subtractions, this.table, this.seatNumber, this.server);
+        Order order = new Order(this.item, this.additions, this.subtractions, this.table, this.seatNumber, this.server);
+        order.remake = true;
+        return order;
     }
 
     /**
-     * Gets the price of the order.
+     * Returns if this order remakes a returned order.
      *
-     * @return the price of the order.
+     * @return true if this order is a remake, false otherwise.
      */
-    public double getPrice() {
+    public boolean isRemake() {
+        return remake;
+    }
 
-        return item.getBasePrice() +
-                this.additions.entrySet().stream().mapToDouble((entry) ->
-                        entry.getKey().getAdditionPrice() * entry.getValue()
-                ).sum();
+    /**
+     * Gets the price of the order.
+     *
+     * @return the price of the order, in cents.
+     */
+    public long getPrice() {
+        return price;
     }
 
     /**
@@ -84,16 +113,16 @@ public class Order implements Comparable {
      * @return a list of all the ingredients used in the order.
      */
     public HashMap<Ingredient, Integer> getAllIngredients() {
-        HashMap<Ingredient, Integer> result = new HashMap<>();
-
-        // add amounts from all ingredients to results map
-        item.getAllIngredients().forEach(result::put);
-        // add amounts from additions to results map
-        additions.forEach((k1, v1) -> result.compute(k1, (k, v) -> (v != null ? v : 0) + additions.get(k)));
-        // subtract amounts from subtractions from results map
-        subtractions.forEach((k1, v1) -> result.compute(k1, (k, v) -> (v != null ? v : 0) - subtractions.get(k)));
+        return ingredients.toMap();
+    }
 
-        return result;
+    /**
+     * Gets all the ingredients used in the order as a primitive vector.
+     *
+     * @return the order's ingredient vector.
+     */
+    public IngredientVector getIngredients() {
+        return ingredients;
     }
 
     /**
@@ -157,7 +186,7 @@ public class Order implements Comparable {
      * @return true if the order has been received; false otherwise.
      */
     public boolean isReceived() {
-        return state >= ORDER_RECEIVED;
+        return state.get() >= ORDER_RECEIVED;
     }
 
     /**
@@ -166,7 +195,7 @@ public class Order implements Comparable {
      * @return true if the order has been delivered; false otherwise.
      */
     public boolean isDelivered() {
-        return state >= ORDER_DELIVERED;
+        return state.get() >= ORDER_DELIVERED;
     }
 
     /**
@@ -175,7 +204,7 @@ public class Order implements Comparable {
      * @return true if the order has been returned; false otherwise.
      */
     public boolean isCancelled() {
-        return state >= ORDER_CANCELLED;
+        return state.get() >= ORDER_CANCELLED;
     }
 
     /**
@@ -184,27 +213,120 @@ public class Order implements Comparable {
      * @return true is the order is cooked; false otherwise.
      */
     public boolean isCooked() {
-        return state >= ORDER_COOKED;
+        return state.get() >= ORDER_COOKED;
+    }
+
+    /**
+     * Moves the order to its next state: received from ordered, cooked from received or delivered from cooked, or
+     * cancelled from any state but cancelled.
+     *
+     * @param next the new state of the order.
+     * @return true if the order moved, false if it was not in the state the move starts from.
+     */
+    public boolean advance(int next) {
+        if (next == ORDER_CANCELLED) {
+            return cancel() >= 0;
+        }
+        int previous = previous(next);
+        if (previous < 0 || !state.compareAndSet(previous, next)) {
+            return false;
+        }
+        moved(previous, next);
+        return true;
+    }
+
+    /**
+     * Cancels the order.
+     *
+     * @return the state the order was cancelled from, or -1 if it was already cancelled.
+     */
+    public int cancel() {
+        int previous;
+        do {
+            previous = state.get();
+            if (previous == ORDER_CANCELLED) {
+                return -1;
+            }
+        } while (!state.compareAndSet(previous, ORDER_CANCELLED));
+        moved(previous, ORDER_CANCELLED);
+        return previous;
+    }
+
+    /**
+     * Returns the state a move to a state starts from.
+     *
+     * @param next the state moved to, other than cancelled.
+     * @return the state moved from, or -1 if the order cannot be moved to the state.
+     */
+    private static int previous(int next) {
+        switch (next) {
+            case ORDER_RECEIVED:
+                return ORDER_ORDERED;
+            case ORDER_COOKED:
+                return ORDER_RECEIVED;
+            case ORDER_DELIVERED:
+                return ORDER_COOKED;
+            default:
+                return -1;
+        }
     }
 
     /**
-     * Sets the order's progress to a specified state.
+     * Records a move between states, and updates the table and store of the order and its service times.
      *
-     * @param progress the new state of the order.
+     * @param previous the state moved from.
+     * @param next     the state moved to.
      */
-    public void setProgress(int progress) {
-        if (progress >= ORDER_ORDERED && progress <= ORDER_CANCELLED) {
-            state = progress;
+    private void moved(int previous, int next) {
+        entered.set(next, System.nanoTime());
+        if (next >= ORDER_DELIVERED) {
+            table.orderDelivered(this);
+        }
+        if (store != null) {
+            store.moved(this, previous);
+            store.getServiceTimes().record(this, next);
         }
     }
 
+    /**
+     * Returns when the order entered a state.
+     *
+     * @param state the state.
+     * @return the time, from System.nanoTime, or 0 if the order has not entered the state.
+     */
+    public long getEntered(int state) {
+        return state >= ORDER_ORDERED && state <= ORDER_CANCELLED ? entered.get(state) : 0;
+    }
+
+    /**
+     * Returns the time between the order entering two states, e.g. from ordered to delivered.
+     *
+     * @param from the earlier state.
+     * @param to   the later state.
+     * @return the time, in nanoseconds, or -1 if the order has not entered both states.
+     */
+    public long getElapsed(int from, int to) {
+        long start = getEntered(from);
+        long end = getEntered(to);
+        return start == 0 || end == 0 ? -1 : end - start;
+    }
+
+    /**
+     * Sets the store which indexes this order.
+     *
+     * @param store an OrderStore.
+     */
+    void setStore(OrderStore store) {
+        this.store = store;
+    }
+
     /**
      * Returns the progress of the Order.
      *
      * @return a int representing the progress of the Order.
      */
     public int getProgress() {
-        return this.state;
+        return this.state.get();
     }
 
     /**
@@ -0,0 +1,183 @@
+package core;
+
+import visual.gui.Server;
+
+import java.util.*;
+
+/**
+ * A store of a restaurant's orders. Live orders are indexed by their state, their server and their table. Closed
+ * orders, i.e. orders that are cancelled, or delivered and paid for, are dropped from the store, so it only grows
+ * with the orders in progress; the journal and the payment ledger keep what is needed of them.
+ */
+public class OrderStore {
+    private final HashMap<Integer, LinkedHashSet<Order>> byState; // Live orders indexed by state
+    private final HashMap<Server, LinkedHashSet<Order>> byServer; // Live orders indexed by server
+    private final HashMap<Table, LinkedHashSet<Order>> byTable; // Live orders indexed by table
+    private final ServiceTimes serviceTimes = new ServiceTimes(); // How long the orders spent in each stage
+
+    /**
+     * Creates an empty OrderStore.
+     */
+    public OrderStore() {
+        byState = new HashMap<>();
+        byServer = new HashMap<>();
+        byTable = new HashMap<>();
+    }
+
+    /**
+     * Returns how long the store's orders spent in each stage.
+     *
+     * @return the ServiceTimes.
+     */
+    public ServiceTimes getServiceTimes() {
+        return serviceTimes;
+    }
+
+    /**
+     * Adds an order to the store. The store follows the order's state from then on.
+     *
+     * @param order the order to add.
+     */
+    public synchronized void add(Order order) {
+        order.setStore(this);
+        if (order.isCancelled()) {
+            return;
+        }
+
+        index(byState, order.getProgress(), order);
+        index(byServer, order.getServer(), order);
+        index(byTable, order.getTable(), order);
+    }
+
+    /**
+     * Re-indexes an order after its state has changed. The order is indexed by its current state rather than the
+     * one it moved to, so that moves made concurrently are indexed correctly whatever order they arrive in.
+     *
+     * @param order    the order.
+     * @param oldState the order's previous state.
+     */
+    synchronized void moved(Order order, int oldState) {
+        if (!unindex(byState, oldState, order)) {
+            return; // already closed, or moved again since
+        }
+
+        int newState = order.getProgress();
+        if (newState == Order.ORDER_CANCELLED) {
+            unindex(byServer, order.getServer(), order);
+            unindex(byTable, order.getTable(), order);
+        } else {
+            index(byState, newState, order);
+        }
+    }
+
+    /**
+     * Closes all of the live orders of a table once the table has paid, dropping them from the store.
+     *
+     * @param table the table that paid.
+     */
+    public synchronized void close(Table table) {
+        LinkedHashSet<Order> orders = byTable.remove(table);
+        if (orders == null) {
+            return;
+        }
+
+        for (Order order : orders) {
+            unindex(byState, order.getProgress(), order);
+            unindex(byServer, order.getServer(), order);
+        }
+    }
+
+    /**
+     * Returns the live orders in a particular state.
+     *
+     * @param state the state, see Order.
+     * @return a list of orders, in the order they were placed.
+     */
+    public synchronized ArrayList<Order> getOrders(int state) {
+        return copy(byState.get(state));
+    }
+
+    /**
+     * Returns the orders that are still being worked on, i.e. not yet delivered or cancelled.
+     *
+     * @return a list of orders.
+     */
+    public synchronized ArrayList<Order> getActiveOrders() {
+        ArrayList<Order> orders = getOrders(Order.ORDER_ORDERED);
+        orders.addAll(copy(byState.get(Order.ORDER_RECEIVED)));
+        orders.addAll(copy(byState.get(Order.ORDER_COOKED)));
+        return orders;
+    }
+
+    /**
+     * Returns the live orders of a server.
+     *
+     * @param server a server.
+     * @return a list of orders, in the order they were placed.
+     */
+    public synchronized ArrayList<Order> getOrders(Server server) {
+        return copy(byServer.get(server));
+    }
+
+    /**
+     * Returns the live orders of a table.
+     *
+     * @param table a table.
+     * @return a list of orders, in the order they were placed.
+     */
+    public synchronized ArrayList<Order> getOrders(Table table) {
+        return copy(byTable.get(table));
+    }
+
+    /**
+     * Returns the number of live orders.
+     *
+     * @return the number of live orders.
+     */
+    public synchronized int getLiveCount() {
+        return byState.values().stream().mapToInt(Set::size).sum();
+    }
+
+    /**
+     * Adds an order to an index.
+     *
+     * @param index the index.
+     * @param key   the key to index the order under.
+     * @param order the order.
+     * @param <K>   the type of the key.
+     */
+    private static <K> void index(HashMap<K, LinkedHashSet<Order>> index, K key, Order order) {
+        index.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(order);
+    }
+
+    /**
+     * Removes an order from an index.
+     *
+     * @param index the index.
+     * @param key   the key the order is indexed under.
+     * @param order the order.
+     * @param <K>   the type of the key.
+     * @return true if the order was in the index, false otherwise.
+     */
+    private static <K> boolean unindex(HashMap<K, LinkedHashSet<Order>> index, K key, Order order) {
+        LinkedHashSet<Order> orders = index.get(key);
+        if (orders == null || !orders.remove(order)) {
+            return false;
+        }
+
+        if (orders.isEmpty()) {
+            index.remove(key);
+        }
+        return true;
+    }
+
+    /**
+     * Copies a set of orders into a list.
+     *
+     * @param orders the orders, possibly null.
+     * @return a new list.
+     */
+    private static ArrayList<Order> copy(Set<Order> orders) {
+        return orders == null ? new ArrayList<>() : new ArrayList<>(orders);
+    }
+}
@@ -0,0 +1,312 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Plans ingredient re-orders from how fast each ingredient is used. Every consumption event updates an
+ * exponentially weighted usage rate, and the second moment of the amounts used, in O(1). Usage is treated as a
+ * compound Poisson process, so over a period of t hours the mean demand is rate * t and its variance is
+ * moment * t. From these, the reorder point covers the demand over the supplier's lead time at the target service
+ * level, and a re-order tops the stock up to cover the lead time plus one review period.
+ * <p>
+ * Until an ingredient has been used, its configured threshold and IngredientManager.DEFAULT_ORDER_AMOUNT are used.
+ */
+public class ReorderEngine implements InventoryListener {
+    private static final double MILLIS_PER_HOUR = 3600000d; // Milliseconds in an hour
+
+    private final IngredientRegistry registry; // The registry giving each ingredient its id
+    private double[] rates = new double[0]; // The weighted usage rate of each ingredient, in units per hour
+    private double[] moments = new double[0]; // The weighted second moment of usage, in units squared per hour
+    private long[] updated = new long[0]; // The time each ingredient's usage was last recorded, 0 if never
+
+    private double halfLifeHours = 72; // The time after which a usage event has half its initial weight
+    private double leadTimeHours = 24; // The time between placing a re-order and receiving it
+    private double reviewHours = 24; // The time between re-orders, i.e. how long a re-order should last
+    private double serviceLevel = 0.95; // The target probability of not running out during the lead time
+    private double z = inverseNormal(serviceLevel); // The safety factor for the service level
+
+    /**
+     * Creates a ReorderEngine listening to the usage of every ingredient in a registry.
+     *
+     * @param registry the registry.
+     */
+    ReorderEngine(IngredientRegistry registry) {
+        this.registry = registry;
+        for (int id = 0; id < registry.size(); id++) {
+            registry.get(id).addListener(this);
+        }
+    }
+
+    /**
+     * Sets the planning parameters.
+     *
+     * @param halfLifeHours the time after which a usage event has half its initial weight, in hours.
+     * @param leadTimeHours the time between placing a re-order and receiving it, in hours.
+     * @param reviewHours   the time a re-order should last beyond the lead time, in hours.
+     * @param serviceLevel  the target probability of not running out during the lead time, e.g. 0.95.
+     */
+    public synchronized void configure(double halfLifeHours, double leadTimeHours, double reviewHours,
+                                       double serviceLevel) {
+        this.halfLifeHours = Math.max(halfLifeHours, 1e-3);
+        this.leadTimeHours = Math.max(leadTimeHours, 0);
+        this.reviewHours = Math.max(reviewHours, 0);
+        this.serviceLevel = Math.min(Math.max(serviceLevel, 0.5), 0.9999);
+        this.z = inverseNormal(this.serviceLevel);
+    }
+
+    /**
+     * Ignores changes in stock; only usage drives the rates.
+     *
+     * @param ingredient the ingredient that changed.
+     */
+    @Override
+    public void amountChanged(Ingredient ingredient) {
+    }
+
+    /**
+     * Records a consumption event.
+     *
+     * @param ingredient the ingredient used.
+     * @param amount     the amount used.
+     */
+    @Override
+    public void usageRecorded(Ingredient ingredient, int amount) {
+        record(ingredient, amount, System.currentTimeMillis());
+    }
+
+    /**
+     * Records a consumption event at a particular time.
+     *
+     * @param ingredient the ingredient used.
+     * @param amount     the amount used.
+     * @param now        the time of the event, in milliseconds.
+     */
+    synchronized void record(Ingredient ingredient, int amount, long now) {
+        int id = index(ingredient);
+        if (id < 0 || amount <= 0) {
+            return;
+        }
+
+        double decay = decay(id, now);
+        double tau = tauHours();
+        rates[id] = rates[id] * decay + amount / tau;
+        moments[id] = moments[id] * decay + (double) amount * amount / tau;
+        updated[id] = Math.max(updated[id], now);
+    }
+
+    /**
+     * Restores the usage rate of an ingredient, e.g. from a backup.
+     *
+     * @param ingredient the ingredient.
+     * @param rate       the weighted usage rate, in units per hour.
+     * @param moment     the weighted second moment of usage, in units squared per hour.
+     * @param time       the time the usage was last recorded, in milliseconds.
+     */
+    public synchronized void restore(Ingredient ingredient, double rate, double moment, long time) {
+        int id = index(ingredient);
+        if (id >= 0) {
+            rates[id] = rate;
+            moments[id] = moment;
+            updated[id] = time;
+        }
+    }
+
+    /**
+     * Returns the current usage rate of an ingredient.
+     *
+     * @param ingredient the ingredient.
+     * @return the weighted usage rate, in units per hour.
+     */
+    public double getRate(Ingredient ingredient) {
+        return getRate(ingredient, System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the usage rate of an ingredient at a particular time.
+     *
+     * @param ingredient the ingredient.
+     * @param now        the time, in milliseconds.
+     * @return the weighted usage rate, in units per hour.
+     */
+    synchronized double getRate(Ingredient ingredient, long now) {
+        int id = index(ingredient);
+        return id < 0 ? 0 : rates[id] * decay(id, now);
+    }
+
+    /**
+     * Returns the weighted usage rate of an ingredient, as last recorded, e.g. for a backup.
+     *
+     * @param ingredient the ingredient.
+     * @return the weighted usage rate at the time usage was last recorded, in units per hour.
+     */
+    public synchronized double getRecordedRate(Ingredient ingredient) {
+        int id = index(ingredient);
+        return id < 0 ? 0 : rates[id];
+    }
+
+    /**
+     * Returns the weighted second moment of the usage of an ingredient, as last recorded.
+     *
+     * @param ingredient the ingredient.
+     * @return the second moment, in units squared per hour.
+     */
+    public synchronized double getMoment(Ingredient ingredient) {
+        int id = index(ingredient);
+        return id < 0 ? 0 : moments[id];
+    }
+
+    /**
+     * Returns the time the usage of an ingredient was last recorded.
+     *
+     * @param ingredient the ingredient.
+     * @return the time in milliseconds, or 0 if it has never been used.
+     */
+    public synchronized long getUpdated(Ingredient ingredient) {
+        int id = index(ingredient);
+        return id < 0 ? 0 : updated[id];
+    }
+
+    /**
+     * Returns the stock level below which an ingredient should be re-ordered.
+     *
+     * @param ingredient the ingredient.
+     * @return the reorder point; never less than the ingredient's threshold.
+     */
+    public int getReorderPoint(Ingredient ingredient) {
+        return getReorderPoint(ingredient, System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the reorder point of an ingredient at a particular time.
+     *
+     * @param ingredient the ingredient.
+     * @param now        the time, in milliseconds.
+     * @return the reorder point; never less than the ingredient's threshold.
+     */
+    synchronized int getReorderPoint(Ingredient ingredient, long now) {
+        int id = index(ingredient);
+        if (id < 0 || updated[id] == 0) {
+            return ingredient.getThreshold();
+        }
+        return Math.max(ingredient.getThreshold(), cover(id, leadTimeHours, now));
+    }
+
+    /**
+     * Returns how much of an ingredient to re-order, given its current stock.
+     *
+     * @param ingredient the ingredient.
+     * @return the quantity to re-order; at least 1.
+     */
+    public int getOrderQuantity(Ingredient ingredient) {
+        return getOrderQuantity(ingredient, System.currentTimeMillis());
+    }
+
+    /**
+     * Returns how much of an ingredient to re-order at a particular time.
+     *
+     * @param ingredient the ingredient.
+     * @param now        the time, in milliseconds.
+     * @return the quantity to re-order; at least 1.
+     */
+    synchronized int getOrderQuantity(Ingredient ingredient, long now) {
+        int id = index(ingredient);
+        if (id < 0 || updated[id] == 0) {
+            return IngredientManager.DEFAULT_ORDER_AMOUNT;
+        }
+
+        int orderUpTo = Math.max(cover(id, leadTimeHours + reviewHours, now), getReorderPoint(ingredient, now) + 1);
+        return Math.max(1, orderUpTo - Math.max(0, ingredient.getAmount()));
+    }
+
+    /**
+     * Returns the stock covering the demand over a period at the target service level.
+     *
+     * @param id    the ingredient's id.
+     * @param hours the length of the period, in hours.
+     * @param now   the time, in milliseconds.
+     * @return the stock needed.
+     */
+    private int cover(int id, double hours, long now) {
+        double decay = decay(id, now);
+        double mean = rates[id] * decay * hours;
+        double deviation = Math.sqrt(moments[id] * decay * hours);
+        return (int) Math.ceil(mean + z * deviation);
+    }
+
+    /**
+     * Returns the weight left of an ingredient's usage since it was last recorded.
+     *
+     * @param id  the ingredient's id.
+     * @param now the time, in milliseconds.
+     * @return a factor between 0 and 1.
+     */
+    private double decay(int id, long now) {
+        if (updated[id] == 0 || now <= updated[id]) {
+            return 1;
+        }
+        return Math.exp(-(now - updated[id]) / MILLIS_PER_HOUR / tauHours());
+    }
+
+    /**
+     * Returns the time constant of the weighting.
+     *
+     * @return the time constant, in hours.
+     */
+    private double tauHours() {
+        return halfLifeHours / Math.log(2);
+    }
+
+    /**
+     * Returns the index of an ingredient in the engine's arrays, growing them for newly registered ingredients.
+     *
+     * @param ingredient the ingredient.
+     * @return its id, or -1 if it is not registered.
+     */
+    private int index(Ingredient ingredient) {
+        int id = ingredient.getId();
+        if (id < 0) {
+            return -1;
+        }
+        if (id >= rates.length) {
+            int size = Math.max(id + 1, registry.size());
+            rates = Arrays.copyOf(rates, size);
+            moments = Arrays.copyOf(moments, size);
+            updated = Arrays.copyOf(updated, size);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the quantile of the standard normal distribution, using Acklam's rational approximation, accurate to
+     * about 1e-9.
+     *
+     * @param p a probability strictly between 0 and 1.
+     * @return the z such that P(Z &lt;= z) = p.
+     */
+    static double inverseNormal(double p) {
+        final double[] a = {-3.969683028665376e+01, 2.209460984245205e+02, -2.759285104469687e+02,
+                1.383577518672690e+02, -3.066479806614716e+01, 2.506628277459239e+00};
+        final double[] b = {-5.447609879822406e+01, 1.615858368580409e+02, -1.556989798598866e+02,
+                6.680131188771972e+01, -1.328068155288572e+01};
+        final double[] c = {-7.784894002430293e-03, -3.223964580411365e-01, -2.400758277161838e+00,
+                -2.549732539343734e+00, 4.374664141464968e+00, 2.938163982698783e+00};
+        final double[] d = {7.784695709041462e-03, 3.224671290700398e-01, 2.445134137142996e+00,
+                3.754408661907416e+00};
+        final double low = 0.02425;
+
+        if (p < low) {
+            double q = Math.sqrt(-2 * Math.log(p));
+            return (((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) * q + c[5])
+                    / ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+        }
+        if (p > 1 - low) {
+            double q = Math.sqrt(-2 * Math.log(1 - p));
+            return -(((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) * q + c[5])
+                    / ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+        }
+
+        double q = p - 0.5, r = q * q;
+        return (((((a[0] * r + a[1]) * r + a[2]) * r + a[3]) * r + a[4]) * r + a[5]) * q
+                / (((((b[0] * r + b[1]) * r + b[2]) * r + b[3]) * r + b[4]) * r + 1);
+    }
+}
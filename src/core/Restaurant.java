@@ -1,10 +1,13 @@
 package core;
 
+import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
+import util.Journal;
 import util.Log;
-import util.PaymentJsonWriter;
+import util.PaymentIndex;
+import util.PaymentLedger;
 import visual.gui.Cook;
 import visual.gui.Employee;
 import visual.gui.Manager;
@@ -14,8 +17,6 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
 
 /**
  * A class representing a restaurant.
@@ -25,10 +26,22 @@ public class Restaurant {
     private IngredientManager ingredientManager; //An IngredientManager
     private String name; // the Restaurant name
     private Menu menu; //the menu
+    private File menuFile; // the file the menu is read from
     private Statistics statistics; // the Restaurant statistics
-
-    private ArrayList<Order> allOrders; // All of the restaurant's orders
-    private ArrayList<Table> tables; //A list of the restaurant's tables
+    private AvailabilityBoard availability; // how many portions of each menu item can be made
+
+    private OrderStore orders; // All of the restaurant's orders
+    private TableRegistry tables; //The restaurant's tables
+    private DispatchQueue.Policy dispatchPolicy = DispatchQueue.Policy.FIFO; // The kitchen's ordering policy
+    private ArrayList<Station> stations = new ArrayList<>(); // The configured kitchen stations
+    private StationRouter router; // Routes orders to the kitchen stations
+    private EventJournal journal; // The write-ahead journal of changes since the last snapshot
+    private PaymentLedger paymentLedger; // The history of payments
+    private PaymentIndex paymentIndex; // Answers queries over the history of payments
+    private Journal.FsyncPolicy fsyncPolicy = Journal.FsyncPolicy.INTERVAL; // When the journal forces writes
+    private long fsyncInterval = 100; // The interval between the journal's forced writes, in milliseconds
+    private long snapshotInterval = 300000; // The time between snapshots of the state, in milliseconds
+    private long snapshotRecords = 10000; // The number of journal records after which a snapshot is taken
 
     /**
      * Creates a restaurant.
@@ -37,63 +50,75 @@ public class Restaurant {
      * @param ingredients The ingredients file
      * @param requests    The file to add ingredient reorders to
      * @param menu        the file containing the menu
-     * @param payments the file containing payment history
+     * @param payments the JSON payment history of earlier versions, imported into the payment ledger once
      */
     public Restaurant(File settings, File ingredients, File requests, File menu, File payments) {
         employees = new HashMap<>();
-        this.allOrders = new ArrayList<>();
-        tables = new ArrayList<>();
+        this.orders = new OrderStore();
+        tables = new TableRegistry();
         ingredientManager = new IngredientManager(ingredients, requests, this);
+        this.menuFile = menu;
         this.menu = new Menu(menu, this);
 
 
         try {
             parseSettings(settings);
-            PaymentJsonWriter.parsePayments(payments);
         } catch (IOException | ParseException e) {
             e.printStackTrace();
         }
 
+        File ledgerDirectory = new File("resources/data/payments");
+        if (payments.isFile()) {
+            int imported = PaymentLedger.importJson(payments, ledgerDirectory);
+            if (imported >= 0) {
+                Log.log(toString(), String.format("Imported %d payments from %s", imported, payments));
+                if (!payments.renameTo(new File(payments.getPath() + ".imported"))) {
+                    System.err.println("Unable to rename " + payments + " after importing it");
+                }
+            }
+        }
+        this.paymentLedger = new PaymentLedger(ledgerDirectory);
+        this.paymentIndex = new PaymentIndex(paymentLedger);
+
+        this.router = new StationRouter(stations, dispatchPolicy);
+        this.availability = new AvailabilityBoard(this.menu, ingredientManager.getIngredients());
         this.statistics = new Statistics(this.menu, ingredientManager.getIngredients(), ingredientManager);
 
+        this.journal = new EventJournal(new File("resources/data/journal"), new File("resources/data/snapshot.bin"),
+                this, fsyncPolicy, fsyncInterval, snapshotInterval, snapshotRecords);
+        int replayed = journal.recover();
+        statistics.refresh();
+        if (replayed > 0) {
+            Log.log(toString(), String.format("Recovered %d journalled events", replayed));
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "restaurant-shutdown"));
+
         this.checkThresholds();
     }
 
     /**
-     * Returns a list of all the orders in a restaurant.
-     * @return a list of orders
+     * Returns the store of all the orders in a restaurant.
+     * @return an OrderStore
      */
-    public ArrayList<Order> getAllOrders() {
-        return allOrders;
+    public OrderStore getOrderStore() {
+        return orders;
     }
 
-
-
     /** Add an order to keep track of
      * @param order order to add
      */
     public void addOrder(Order order){
-        allOrders.add(order);
+        orders.add(order);
     }
 
     /**
-     * Checks if there are enough ingredients to make an order.
+     * Checks if there are enough ingredients to make an order. This is read-only, see IngredientManager.canOrder.
      *
      * @param order the order to check.
      * @return true if there are enough ingredients to make the order; false otherwise.
      */
     public boolean checkIngredients(Order order) {
-        Map<Ingredient, Integer> ingredients = order.getAllIngredients();
-        for (Map.Entry<Ingredient, Integer> entry : ingredients.entrySet()) {
-            Optional<Ingredient> ing = getInventoryList().stream().filter(a -> a.equals(entry.getKey())).findFirst();
-
-            if (entry.getKey().getAmount() < entry.getValue()) {
-				return false;
-			}
-        }
-
-        statistics.update(order);
-        return true;
+        return ingredientManager.canOrder(order);
     }
 
     /**
@@ -102,26 +127,23 @@ public class Restaurant {
      * @param order deduct based on this order.
      */
     public void updateInventory(Order order) {
-        order.getAllIngredients().forEach(Ingredient::update);
+        IngredientVector ingredients = order.getIngredients();
+        journal.lock();
+        try {
+            for (int i = 0; i < ingredients.size(); i++) {
+                ingredients.ingredient(i).update(ingredients.amount(i));
+            }
+            journal.cooked(order);
+        } finally {
+            journal.unlock();
+        }
     }
 
     /**
      * Forces the kitchen to check the thresholds.
      */
     public void checkThresholds() {
-        this.getInventoryList().forEach(a -> {
-            // Update external file
-            if (a.getAmount() < a.getThreshold()) {
-                if (!ingredientManager.isInReorder(a))
-                    Log.log(this, String.format("Now requesting %s units of %s",
-                            IngredientManager.DEFAULT_ORDER_AMOUNT, a.getDisplayName()));
-                ingredientManager.reorderIngredient(a);
-            } else {
-                ingredientManager.removeReorderIngredient(a);
-            }
-
-            ingredientManager.updateRequestsFile();
-        });
+        ingredientManager.getThresholdMonitor().check();
     }
 
     /**
@@ -131,13 +153,7 @@ public class Restaurant {
      * @return the table with the specified table number.
      */
     public Table getTable(int tableNumber) {
-        for (Table table : tables) {
-            if (table.getTableNumber() == tableNumber) {
-                return table;
-            }
-        }
-
-        return null;
+        return tables.get(tableNumber);
     }
 
     /**
@@ -146,27 +162,88 @@ public class Restaurant {
      */
 
     public ArrayList<Table> getTables() {
-        return this.tables;
+        return this.tables.getTables();
     }
 
     /**
-     * Sends an order to the cooks
+     * Returns the registry of the restaurant's tables.
+     *
+     * @return a TableRegistry.
+     */
+    public TableRegistry getTableRegistry() {
+        return tables;
+    }
+
+    /**
+     * Sends an order to the cooks of the station it is routed to
      *
      * @param order the order to be assigned.
      */
     public void sendOrder(Order order) {
-        Cook.assignOrder(order);
+        Station station = router.route(order, order.isRemake() ? 1 : 0);
         ArrayList<Employee> allCooks = this.employees.get("Cook");
 
         if(allCooks == null)return;
         allCooks.forEach(employee -> {
             Cook cook = (Cook) employee;
-            if (cook.isAvailable()) cook.refreshAssigned();
+            if (cook.isAvailable() && (cook.getStation() == null || cook.getStation() == station))
+                cook.refreshAssigned();
 
         });
 
     }
 
+    /**
+     * Returns the journal of changes to the restaurant's persistent state.
+     *
+     * @return an EventJournal.
+     */
+    public EventJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Returns the history of payments.
+     *
+     * @return a PaymentLedger.
+     */
+    public PaymentLedger getPaymentLedger() {
+        return paymentLedger;
+    }
+
+    /**
+     * Returns the index answering queries over the history of payments.
+     *
+     * @return a PaymentIndex.
+     */
+    public PaymentIndex getPaymentIndex() {
+        return paymentIndex;
+    }
+
+    /**
+     * Saves the restaurant's state and closes its files, when the program exits.
+     */
+    private void shutdown() {
+        journal.close();
+        Log.log(toString(), String.format("Flushed the state %d times: mean %.1f ms, max %.1f ms, max pause %.1f ms",
+                journal.getFlushes(), journal.getMeanFlushNanos() / 1e6, journal.getMaxFlushNanos() / 1e6,
+                journal.getMaxPauseNanos() / 1e6));
+        try {
+            paymentLedger.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the router of orders to the kitchen's stations.
+     *
+     * @return a StationRouter.
+     */
+    public StationRouter getStationRouter() {
+        return router;
+    }
+
     /**
      * Parses a file to set the program settings.
      *
@@ -181,6 +258,51 @@ public class Restaurant {
         name = (String) data.get("name");
         ArrayList<Long> tableSizes = (ArrayList<Long>) data.get("table_layout");
 
+        String policy = (String) data.get("dispatch_policy");
+        if (policy != null) {
+            try {
+                dispatchPolicy = DispatchQueue.Policy.valueOf(policy.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                System.err.println("Unknown dispatch policy " + policy + ", using " + dispatchPolicy);
+            }
+        }
+
+        JSONObject reorder = (JSONObject) data.get("reorder");
+        if (reorder != null) {
+            ingredientManager.getReorderEngine().configure(
+                    getDouble(reorder, "half_life_hours", 72), getDouble(reorder, "lead_time_hours", 24),
+                    getDouble(reorder, "review_hours", 24), getDouble(reorder, "service_level", 0.95));
+        }
+
+        JSONObject journalData = (JSONObject) data.get("journal");
+        if (journalData != null) {
+            String fsync = (String) journalData.get("fsync");
+            if (fsync != null) {
+                try {
+                    fsyncPolicy = Journal.FsyncPolicy.valueOf(fsync.trim().toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Unknown journal fsync policy " + fsync + ", using " + fsyncPolicy);
+                }
+            }
+            fsyncInterval = (long) getDouble(journalData, "fsync_interval_ms", fsyncInterval);
+            snapshotInterval = (long) (getDouble(journalData, "snapshot_interval_s", snapshotInterval / 1000d) * 1000);
+            snapshotRecords = (long) getDouble(journalData, "snapshot_records", snapshotRecords);
+        }
+
+        JSONArray stationData = (JSONArray) data.get("stations");
+        if (stationData != null) {
+            for (Object item : stationData) {
+                JSONObject station = (JSONObject) item;
+                ArrayList<String> stationTags = new ArrayList<>();
+                JSONArray tagData = (JSONArray) station.get("tags");
+                if (tagData != null) {
+                    tagData.forEach(tag -> stationTags.add(tag.toString()));
+                }
+                stations.add(new Station((String) station.get("name"),
+                        menu.getTagDictionary().intern(stationTags), dispatchPolicy));
+            }
+        }
+
         int tableNum = 1;
 
         for (int size = 0; size < tableSizes.size(); size++) {
@@ -190,6 +312,19 @@ public class Restaurant {
         }
     }
 
+    /**
+     * Gets a number from a json object.
+     *
+     * @param object       the json object
+     * @param key          the key of the number
+     * @param defaultValue the value to use if the key is missing
+     * @return the number
+     */
+    private static double getDouble(JSONObject object, String key, double defaultValue) {
+        Object value = object.get(key);
+        return value instanceof Number ? ((Number) value).doubleValue() : defaultValue;
+    }
+
     /**
      * Logs an employee into the program.
      *
@@ -205,6 +340,7 @@ public class Restaurant {
 
         employees.get(employee.getType()).add(employee);
         if (employee instanceof Manager) statistics.addManager((Manager) employee);
+        if (employee instanceof AvailabilityListener) availability.addListener((AvailabilityListener) employee);
 
         Log.log(toString(), String.format("%s logged in", employee.toString()));
     }
@@ -221,6 +357,9 @@ public class Restaurant {
         if (employee instanceof Manager) {
             statistics.removeManager((Manager) employee);
         }
+        if (employee instanceof AvailabilityListener) {
+            availability.removeListener((AvailabilityListener) employee);
+        }
 
         Log.log(toString(), String.format("%s logged out", employee.toString()));
     }
@@ -273,6 +412,13 @@ public class Restaurant {
         return menu;
     }
 
+    /**
+     * Reloads the menu from its file, e.g. after it was edited.
+     */
+    public void reloadMenu() {
+        menu.reload(menuFile);
+    }
+
     /**
      * Return an Employee.
      *
@@ -328,6 +474,15 @@ public class Restaurant {
         return statistics;
     }
 
+    /**
+     * Returns the board of how many portions of each menu item can be made.
+     *
+     * @return an AvailabilityBoard.
+     */
+    public AvailabilityBoard getAvailabilityBoard() {
+        return availability;
+    }
+
     /**
      * Gets a mapping of ingredients and their amounts for the kitchen's inventory.
      *
@@ -0,0 +1,237 @@
+package core;
+
+import util.AtomicFile;
+import util.LatencyHistogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Measures how long orders spend in each stage of the kitchen, overall and for each menu item, from the times their
+ * state moved (see Order). Each stage keeps a LatencyHistogram over the last hour, so the percentiles of any window
+ * up to an hour can be queried, e.g. to find which stage is the bottleneck during a rush.
+ */
+public class ServiceTimes {
+    /**
+     * A stage of an order, between two of its states.
+     */
+    public enum Stage {
+        QUEUED("Queued", Order.ORDER_ORDERED, Order.ORDER_RECEIVED),
+        COOKING("Cooking", Order.ORDER_RECEIVED, Order.ORDER_COOKED),
+        PASS("Pass", Order.ORDER_COOKED, Order.ORDER_DELIVERED),
+        TOTAL("Total", Order.ORDER_ORDERED, Order.ORDER_DELIVERED);
+
+        private final String name; // The name displayed
+        private final int from; // The state the stage starts at
+        private final int to; // The state the stage ends at
+
+        /**
+         * Creates a Stage.
+         *
+         * @param name the name displayed.
+         * @param from the state the stage starts at.
+         * @param to   the state the stage ends at.
+         */
+        Stage(String name, int from, int to) {
+            this.name = name;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Returns the name of the stage.
+         *
+         * @return the name.
+         */
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * The length of the longest window, in minutes.
+     */
+    public static final int WINDOW_MINUTES = 60;
+    private static final long MINUTE = 60000L; // The length of a minute, in milliseconds
+    private static final int ITEM_SLOT_MINUTES = 5; // The granularity of the windows of menu items, in minutes
+    private static final double[] PERCENTILES = {50, 95, 99}; // The percentiles reported
+
+    private final LatencyHistogram[] stages = new LatencyHistogram[Stage.values().length]; // The time of each stage
+    private final ConcurrentHashMap<String, LatencyHistogram[]> items = new ConcurrentHashMap<>(); // Per menu item
+
+    /**
+     * Creates empty ServiceTimes.
+     */
+    public ServiceTimes() {
+        for (Stage stage : Stage.values()) {
+            stages[stage.ordinal()] = new LatencyHistogram(MINUTE, WINDOW_MINUTES);
+        }
+    }
+
+    /**
+     * Records the stages an order completed by moving to a state.
+     *
+     * @param order the order.
+     * @param state the state the order moved to.
+     */
+    void record(Order order, int state) {
+        long now = System.currentTimeMillis();
+        for (Stage stage : Stage.values()) {
+            if (stage.to != state) {
+                continue;
+            }
+            long elapsed = order.getElapsed(stage.from, stage.to);
+            if (elapsed < 0) {
+                continue;
+            }
+            long millis = elapsed / 1000000L;
+            stages[stage.ordinal()].record(millis, now);
+            items.computeIfAbsent(order.getItem().getName(), name -> newItem())[stage.ordinal()].record(millis, now);
+        }
+    }
+
+    /**
+     * Creates the histograms of a menu item. They have a coarser granularity than those of the stages, to bound
+     * the memory used by a long menu.
+     *
+     * @return a histogram for each stage.
+     */
+    private static LatencyHistogram[] newItem() {
+        LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram(ITEM_SLOT_MINUTES * MINUTE, WINDOW_MINUTES / ITEM_SLOT_MINUTES);
+        }
+        return histograms;
+    }
+
+    /**
+     * Returns the times of a stage over the last minutes.
+     *
+     * @param stage   the stage.
+     * @param minutes the length of the window, in minutes, at most WINDOW_MINUTES.
+     * @return the times, in milliseconds.
+     */
+    public LatencyHistogram.Snapshot get(Stage stage, int minutes) {
+        return stages[stage.ordinal()].snapshot(minutes);
+    }
+
+    /**
+     * Returns the times of a stage for a menu item over the last minutes, to the granularity of the item windows.
+     *
+     * @param item    the name of the menu item.
+     * @param stage   the stage.
+     * @param minutes the length of the window, in minutes, at most WINDOW_MINUTES.
+     * @return the times, in milliseconds, or null if the item was never measured.
+     */
+    public LatencyHistogram.Snapshot get(String item, Stage stage, int minutes) {
+        LatencyHistogram[] histograms = items.get(item);
+        return histograms == null ? null
+                : histograms[stage.ordinal()].snapshot((minutes + ITEM_SLOT_MINUTES - 1) / ITEM_SLOT_MINUTES);
+    }
+
+    /**
+     * Returns a one-line summary of the times of a stage over the last minutes.
+     *
+     * @param stage   the stage.
+     * @param minutes the length of the window, in minutes.
+     * @return the summary.
+     */
+    public String summary(Stage stage, int minutes) {
+        return String.format("%s (last %d min): %s", stage, minutes, format(get(stage, minutes)));
+    }
+
+    /**
+     * Returns a report of the times of every stage over the last minutes, overall and for each menu item.
+     *
+     * @param minutes the length of the window, in minutes.
+     * @return the report.
+     */
+    public String report(int minutes) {
+        StringBuilder sb = new StringBuilder(String.format("Service times over the last %d minutes%n", minutes));
+        for (Stage stage : Stage.values()) {
+            sb.append(String.format("  %-8s %s%n", stage, format(get(stage, minutes))));
+        }
+        for (Map.Entry<String, LatencyHistogram[]> item : new TreeMap<>(items).entrySet()) {
+            sb.append(System.lineSeparator()).append(item.getKey()).append(System.lineSeparator());
+            for (Stage stage : Stage.values()) {
+                sb.append(String.format("  %-8s %s%n", stage, format(get(item.getKey(), stage, minutes))));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Exports the times of every stage over the last minutes, overall and for each menu item, as CSV.
+     *
+     * @param file    the file to write.
+     * @param minutes the length of the window, in minutes.
+     * @throws IOException if the file cannot be written.
+     */
+    public void export(File file, int minutes) throws IOException {
+        StringBuilder sb = new StringBuilder("item,stage,window_min,count,p50_ms,p95_ms,p99_ms,max_ms\n");
+        for (Stage stage : Stage.values()) {
+            row(sb, "", stage, minutes, get(stage, minutes));
+        }
+        for (String item : new TreeMap<>(items).keySet()) {
+            for (Stage stage : Stage.values()) {
+                row(sb, item, stage, minutes, get(item, stage, minutes));
+            }
+        }
+        AtomicFile.write(file, sb.toString());
+    }
+
+    /**
+     * Appends a CSV row of times.
+     *
+     * @param sb      the CSV.
+     * @param item    the name of the menu item, or "" for every item.
+     * @param stage   the stage.
+     * @param minutes the length of the window, in minutes.
+     * @param times   the times.
+     */
+    private static void row(StringBuilder sb, String item, Stage stage, int minutes, LatencyHistogram.Snapshot times) {
+        sb.append('"').append(item.replace("\"", "\"\"")).append("\",").append(stage).append(',').append(minutes)
+                .append(',').append(times.getCount());
+        for (double percentile : PERCENTILES) {
+            sb.append(',').append(times.getPercentile(percentile));
+        }
+        sb.append(',').append(times.getMax()).append('\n');
+    }
+
+    /**
+     * Formats times as their count and percentiles.
+     *
+     * @param times the times, or null.
+     * @return the formatted times.
+     */
+    private static String format(LatencyHistogram.Snapshot times) {
+        if (times == null || times.getCount() == 0) {
+            return "no orders";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (double percentile : PERCENTILES) {
+            sb.append(String.format("p%.0f %s, ", percentile, duration(times.getPercentile(percentile))));
+        }
+        return sb.append("max ").append(duration(times.getMax())).append(" (").append(times.getCount())
+                .append(times.getCount() == 1 ? " order)" : " orders)").toString();
+    }
+
+    /**
+     * Formats a duration for display.
+     *
+     * @param millis the duration, in milliseconds.
+     * @return e.g. "850 ms", "42.0 s" or "6.5 min".
+     */
+    private static String duration(long millis) {
+        if (millis < 1000) {
+            return millis + " ms";
+        } else if (millis < MINUTE) {
+            return String.format("%.1f s", millis / 1000.0);
+        }
+        return String.format("%.1f min", millis / (double) MINUTE);
+    }
+}
@@ -0,0 +1,218 @@
+package core;
+
+import util.AtomicFile;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A compact binary snapshot of the restaurant's persistent state: the stock and usage of every ingredient and the
+ * usage of every menu item, including their recent usage windows, together with the sequence number of the last
+ * journal record it includes. Payments are kept by the PaymentLedger instead, so the snapshot's size does not grow
+ * with the history. It is captured while no change is in progress (see EventJournal), so it is a consistent cut, and
+ * it is written to a temporary file and renamed over the previous snapshot, so a crash leaves either snapshot intact.
+ */
+final class StateSnapshot {
+    private static final int MAGIC = 0x524d5353; // "RMSS"
+    private static final int VERSION = 1; // The version of the file format
+
+    private final long sequence; // The sequence number of the last journal record included
+    private final ArrayList<String> ingredientNames = new ArrayList<>(); // The name of each ingredient
+    private final ArrayList<int[]> ingredientCounts = new ArrayList<>(); // The amount and usage of each ingredient
+    private final ArrayList<double[]> ingredientRates = new ArrayList<>(); // The usage rate and moment of each
+    private final ArrayList<Long> ingredientUpdated = new ArrayList<>(); // When each ingredient was last used
+    private final ArrayList<UsageCounter> ingredientRecent = new ArrayList<>(); // The recent usage of each
+    private final ArrayList<String> itemNames = new ArrayList<>(); // The name of each menu item
+    private final ArrayList<Integer> itemUsages = new ArrayList<>(); // The usage of each menu item
+    private final ArrayList<UsageCounter> itemRecent = new ArrayList<>(); // The recent usage of each menu item
+
+    /**
+     * Creates an empty StateSnapshot.
+     *
+     * @param sequence the sequence number of the last journal record included.
+     */
+    private StateSnapshot(long sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * Captures the state of a restaurant. No change may be in progress.
+     *
+     * @param restaurant the restaurant.
+     * @param sequence   the sequence number of the last journal record included.
+     * @return the snapshot.
+     */
+    static StateSnapshot capture(Restaurant restaurant, long sequence) {
+        StateSnapshot snapshot = new StateSnapshot(sequence);
+        ReorderEngine engine = restaurant.getIngredientManager().getReorderEngine();
+        for (Ingredient ingredient : restaurant.getIngredientManager().getIngredients()) {
+            snapshot.ingredientNames.add(ingredient.getDisplayName());
+            snapshot.ingredientCounts.add(new int[]{ingredient.getAmount(), ingredient.getUsage()});
+            snapshot.ingredientRates.add(new double[]{engine.getRecordedRate(ingredient),
+                    engine.getMoment(ingredient)});
+            snapshot.ingredientUpdated.add(engine.getUpdated(ingredient));
+            snapshot.ingredientRecent.add(copy(ingredient.getRecentUsage()));
+        }
+        for (MenuItem item : restaurant.getMenu()) {
+            snapshot.itemNames.add(item.getName());
+            snapshot.itemUsages.add(item.getUsage());
+            snapshot.itemRecent.add(copy(item.getRecentUsage()));
+        }
+        return snapshot;
+    }
+
+    /**
+     * Copies a usage counter, so that later usage does not change the snapshot.
+     *
+     * @param counter the counter.
+     * @return a copy.
+     */
+    private static UsageCounter copy(UsageCounter counter) {
+        UsageCounter copy = new UsageCounter();
+        copy.copy(counter);
+        return copy;
+    }
+
+    /**
+     * Restores the state of a restaurant from this snapshot. Ingredients and menu items that no longer exist are
+     * skipped.
+     *
+     * @param restaurant the restaurant.
+     */
+    void restore(Restaurant restaurant) {
+        IngredientManager ingredientManager = restaurant.getIngredientManager();
+        for (int i = 0; i < ingredientNames.size(); i++) {
+            Ingredient ingredient;
+            try {
+                ingredient = ingredientManager.getIngredient(ingredientNames.get(i));
+            } catch (UnknownIngredientException e) {
+                continue;
+            }
+            ingredient.setAmount(ingredientCounts.get(i)[0]);
+            ingredient.setUsage(ingredientCounts.get(i)[1]);
+            ingredientManager.getReorderEngine().restore(ingredient, ingredientRates.get(i)[0],
+                    ingredientRates.get(i)[1], ingredientUpdated.get(i));
+            ingredient.getRecentUsage().copy(ingredientRecent.get(i));
+        }
+        for (int i = 0; i < itemNames.size(); i++) {
+            MenuItem item = restaurant.getMenu().get(itemNames.get(i));
+            if (item != null) {
+                item.setUsage(itemUsages.get(i));
+                item.getRecentUsage().copy(itemRecent.get(i));
+            }
+        }
+    }
+
+    /**
+     * Returns the sequence number of the last journal record included in this snapshot.
+     *
+     * @return the sequence number.
+     */
+    long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Writes this snapshot to a file, atomically replacing any previous snapshot.
+     *
+     * @param file the snapshot file.
+     * @throws IOException if the snapshot cannot be written.
+     */
+    void write(File file) throws IOException {
+        File temp = AtomicFile.temp(file);
+        CRC32 crc = new CRC32();
+        try (FileOutputStream stream = new FileOutputStream(temp)) {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new CheckedOutputStream(stream, crc)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sequence);
+
+            out.writeInt(ingredientNames.size());
+            for (int i = 0; i < ingredientNames.size(); i++) {
+                out.writeUTF(ingredientNames.get(i));
+                out.writeInt(ingredientCounts.get(i)[0]);
+                out.writeInt(ingredientCounts.get(i)[1]);
+                out.writeDouble(ingredientRates.get(i)[0]);
+                out.writeDouble(ingredientRates.get(i)[1]);
+                out.writeLong(ingredientUpdated.get(i));
+                ingredientRecent.get(i).write(out);
+            }
+
+            out.writeInt(itemNames.size());
+            for (int i = 0; i < itemNames.size(); i++) {
+                out.writeUTF(itemNames.get(i));
+                out.writeInt(itemUsages.get(i));
+                itemRecent.get(i).write(out);
+            }
+
+            out.flush();
+
+            new DataOutputStream(stream).writeInt((int) crc.getValue());
+            stream.getFD().sync();
+        }
+
+        AtomicFile.commit(temp, file);
+    }
+
+    /**
+     * Reads a snapshot from a file.
+     *
+     * @param file the snapshot file.
+     * @return the snapshot, or null if the file does not exist.
+     * @throws IOException if the snapshot cannot be read, or is corrupt.
+     */
+    static StateSnapshot read(File file) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            DataInputStream checked = new DataInputStream(new CheckedInputStream(in, crc));
+            if (checked.readInt() != MAGIC || checked.readInt() != VERSION) {
+                throw new IOException("Not a snapshot, or of an unknown version: " + file);
+            }
+
+            StateSnapshot snapshot = new StateSnapshot(checked.readLong());
+            int ingredients = checked.readInt();
+            for (int i = 0; i < ingredients; i++) {
+                snapshot.ingredientNames.add(checked.readUTF());
+                snapshot.ingredientCounts.add(new int[]{checked.readInt(), checked.readInt()});
+                snapshot.ingredientRates.add(new double[]{checked.readDouble(), checked.readDouble()});
+                snapshot.ingredientUpdated.add(checked.readLong());
+                snapshot.ingredientRecent.add(readCounter(checked));
+            }
+
+            int items = checked.readInt();
+            for (int i = 0; i < items; i++) {
+                snapshot.itemNames.add(checked.readUTF());
+                snapshot.itemUsages.add(checked.readInt());
+                snapshot.itemRecent.add(readCounter(checked));
+            }
+
+            if ((int) crc.getValue() != in.readInt()) {
+                throw new IOException("Corrupt snapshot: " + file);
+            }
+            return snapshot;
+        } catch (EOFException e) {
+            throw new IOException("Truncated snapshot: " + file);
+        }
+    }
+
+    /**
+     * Reads a usage counter.
+     *
+     * @param in the stream.
+     * @return the counter.
+     * @throws IOException if the counter cannot be read.
+     */
+    private static UsageCounter readCounter(DataInputStream in) throws IOException {
+        UsageCounter counter = new UsageCounter();
+        counter.read(in);
+        return counter;
+    }
+}
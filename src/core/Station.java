@@ -0,0 +1,73 @@
+package core;
+
+import java.util.BitSet;
+
+/**
+ * A kitchen station, e.g. the grill, with its own queue of orders. A station takes the orders of menu items that
+ * have any of its tags; a station without tags takes any order.
+ */
+public class Station {
+    private final String name; // The name of the station
+    private final BitSet tags; // The tags this station takes orders for
+    private final DispatchQueue queue; // The station's queue of orders
+
+    /**
+     * Creates a station.
+     *
+     * @param name   the name of the station.
+     * @param tags   the tags this station takes orders for; empty to take any order.
+     * @param policy the ordering policy of the station's queue.
+     */
+    public Station(String name, BitSet tags, DispatchQueue.Policy policy) {
+        this.name = name;
+        this.tags = tags;
+        this.queue = new DispatchQueue(policy);
+    }
+
+    /**
+     * Returns if this station takes orders for a menu item.
+     *
+     * @param item a menu item.
+     * @return true if the item has any of this station's tags, or this station has no tags.
+     */
+    public boolean accepts(MenuItem item) {
+        return tags.isEmpty() || tags.intersects(item.getTagSet());
+    }
+
+    /**
+     * Returns if this station takes any order.
+     *
+     * @return true if this station has no tags.
+     */
+    public boolean isCatchAll() {
+        return tags.isEmpty();
+    }
+
+    /**
+     * Returns the name of the station.
+     *
+     * @return the name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the station's queue of orders.
+     *
+     * @return a DispatchQueue.
+     */
+    public DispatchQueue getQueue() {
+        return queue;
+    }
+
+    /**
+     * Returns a String representation of the station.
+     *
+     * @return the name of the station.
+     */
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,147 @@
+package core;
+
+import visual.gui.Cook;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Routes orders to kitchen stations by the tags of their menu items. Each order goes to the first station, in
+ * configuration order, that accepts it; a catch-all station always exists for orders no other station accepts.
+ */
+public class StationRouter {
+    /**
+     * The name of the catch-all station created when none is configured.
+     */
+    public static final String DEFAULT_STATION = "Kitchen";
+
+    private final ArrayList<Station> stations; // The stations, in configuration order
+    private final ConcurrentHashMap<Order, Station> routes; // The station each waiting order was routed to
+
+    /**
+     * Creates a StationRouter.
+     *
+     * @param stations the configured stations, in priority order.
+     * @param policy   the ordering policy of a catch-all station, if one must be added.
+     */
+    public StationRouter(List<Station> stations, DispatchQueue.Policy policy) {
+        this.stations = new ArrayList<>(stations);
+        this.routes = new ConcurrentHashMap<>();
+
+        if (this.stations.stream().noneMatch(Station::isCatchAll)) {
+            this.stations.add(new Station(DEFAULT_STATION, new BitSet(), policy));
+        }
+    }
+
+    /**
+     * Routes an order to its station.
+     *
+     * @param order    the order.
+     * @param priority the priority of the order; higher is more urgent.
+     * @return the station the order was routed to.
+     */
+    public Station route(Order order, int priority) {
+        for (Station station : stations) {
+            if (station.accepts(order.getItem())) {
+                routes.put(order, station);
+                station.getQueue().submit(order, priority);
+                return station;
+            }
+        }
+        return null; // unreachable, there is always a catch-all station
+    }
+
+    /**
+     * Claims an order for a cook.
+     *
+     * @param order the order.
+     * @param cook  the cook claiming the order.
+     * @return true if the cook claimed the order, false if it was already claimed or cancelled.
+     */
+    public boolean claim(Order order, Cook cook) {
+        Station station = routes.get(order);
+        if (station == null || !station.getQueue().claim(order, cook)) {
+            return false;
+        }
+        routes.remove(order);
+        return true;
+    }
+
+    /**
+     * Cancels a waiting order.
+     *
+     * @param order the order.
+     * @return true if the order was waiting, false otherwise.
+     */
+    public boolean cancel(Order order) {
+        Station station = routes.remove(order);
+        return station != null && station.getQueue().cancel(order);
+    }
+
+    /**
+     * Returns the waiting orders of a station.
+     *
+     * @param station the station, or null for all stations.
+     * @return a list of waiting orders.
+     */
+    public ArrayList<Order> getWaiting(Station station) {
+        if (station != null) {
+            return station.getQueue().getWaiting();
+        }
+
+        ArrayList<Order> waiting = new ArrayList<>();
+        stations.forEach(a -> waiting.addAll(a.getQueue().getWaiting()));
+        return waiting;
+    }
+
+    /**
+     * Gets a station by name, ignoring case.
+     *
+     * @param name the name of the station.
+     * @return the station, or null if there is no such station.
+     */
+    public Station getStation(String name) {
+        if (name == null) {
+            return null;
+        }
+        return stations.stream().filter(a -> a.getName().equalsIgnoreCase(name.trim())).findFirst().orElse(null);
+    }
+
+    /**
+     * Returns all stations.
+     *
+     * @return an unmodifiable list of stations.
+     */
+    public List<Station> getStations() {
+        return Collections.unmodifiableList(stations);
+    }
+
+    /**
+     * Returns the total number of waiting orders across all stations.
+     *
+     * @return the number of waiting orders.
+     */
+    public int getDepth() {
+        return stations.stream().mapToInt(a -> a.getQueue().getDepth()).sum();
+    }
+
+    /**
+     * Returns a String summary of every station's queue.
+     *
+     * @return a String.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Station station : stations) {
+            if (sb.length() > 0) {
+                sb.append(System.lineSeparator());
+            }
+            sb.append(station.getName()).append(": ").append(station.getQueue());
+        }
+        return sb.toString();
+    }
+}
@@ -4,13 +4,16 @@ import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
+import util.AtomicFile;
 import visual.gui.Manager;
 
 import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.function.ToLongFunction;
 
 /**
  * Keeps track of most ordered dishes and most used ingredients in a Restaurant.
@@ -32,6 +35,14 @@ public class Statistics {
 	 * An IngredientManager.
 	 */
 	private IngredientManager ingredientManager;
+	/**
+	 * The ingredients, ranked by usage.
+	 */
+	private final UsageRanking<Ingredient> ingredientRanking;
+	/**
+	 * The menu items, ranked by usage.
+	 */
+	private final UsageRanking<MenuItem> menuRanking;
 	/**
 	 * The ingredient backup file.
 	 */
@@ -66,6 +77,8 @@ public class Statistics {
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
+		this.ingredientRanking = new UsageRanking<>(ingredients, Ingredient::getUsage);
+		this.menuRanking = new UsageRanking<>(menu, MenuItem::getUsage);
 
 		backup();
 		ingredientManager.setStatistics(this);
@@ -91,19 +104,113 @@ public class Statistics {
 	}
 
 	/**
-	 * Prints each ingredient and the current usage of each ingredient.
+	 * Returns the ingredients by decreasing usage, without reordering the restaurant's ingredients.
+	 *
+	 * @return an immutable list of the ingredients.
+	 */
+	public List<Ingredient> getIngredients() {
+		return ingredientRanking.getRanking();
+	}
+
+	/**
+	 * Returns the menu items by decreasing usage, without reordering the menu.
+	 *
+	 * @return an immutable list of the menu items.
+	 */
+	public List<MenuItem> getMenuItems() {
+		return menuRanking.getRanking();
+	}
+
+	/**
+	 * Returns the most used ingredients.
+	 *
+	 * @param k the number of ingredients.
+	 * @return an immutable list of at most k ingredients, by decreasing usage.
+	 */
+	public List<Ingredient> getTopIngredients(int k) {
+		return ingredientRanking.top(k);
+	}
+
+	/**
+	 * Returns the most ordered menu items.
+	 *
+	 * @param k the number of menu items.
+	 * @return an immutable list of at most k menu items, by decreasing usage.
+	 */
+	public List<MenuItem> getTopMenuItems(int k) {
+		return menuRanking.top(k);
+	}
+
+	/**
+	 * Returns the menu items by decreasing usage over the last units of a window, e.g. the last 3 hours.
+	 *
+	 * @param window the granularity of the window.
+	 * @param units  the number of units, including the current one.
+	 * @return a new list of the menu items.
+	 */
+	public List<MenuItem> getMenuItems(UsageCounter.Window window, int units) {
+		return rankRecent(menuItems, item -> item.getRecentUsage().sum(window, units));
+	}
+
+	/**
+	 * Returns the ingredients by decreasing usage over the last units of a window, e.g. the last 7 days.
+	 *
+	 * @param window the granularity of the window.
+	 * @param units  the number of units, including the current one.
+	 * @return a new list of the ingredients.
+	 */
+	public List<Ingredient> getIngredients(UsageCounter.Window window, int units) {
+		return rankRecent(ingredients, ingredient -> ingredient.getRecentUsage().sum(window, units));
+	}
+
+	/**
+	 * Returns the number of times a menu item was ordered over the last units of a window.
+	 *
+	 * @param item   the menu item.
+	 * @param window the granularity of the window.
+	 * @param units  the number of units, including the current one.
+	 * @return the number of orders.
 	 */
-	public ArrayList<Ingredient> getIngredients() {
-		ingredients.sort(Ingredient::compareTo);
-		return ingredients;
+	public long getUsage(MenuItem item, UsageCounter.Window window, int units) {
+		return item.getRecentUsage().sum(window, units);
 	}
 
 	/**
-	 * Prints each MenuItem and the current usage of each MenuItem.
+	 * Returns the amount of an ingredient used over the last units of a window.
+	 *
+	 * @param ingredient the ingredient.
+	 * @param window     the granularity of the window.
+	 * @param units      the number of units, including the current one.
+	 * @return the amount used.
 	 */
-	public ArrayList<MenuItem> getMenuItems() {
-		menuItems.sort(MenuItem::compareTo);
-		return menuItems;
+	public long getUsage(Ingredient ingredient, UsageCounter.Window window, int units) {
+		return ingredient.getRecentUsage().sum(window, units);
+	}
+
+	/**
+	 * Sorts a copy of some elements by decreasing recent usage, reading each usage once.
+	 *
+	 * @param elements the elements.
+	 * @param usage    the recent usage of an element.
+	 * @param <T>      the type of the elements.
+	 * @return a new list of the elements.
+	 */
+	private static <T> List<T> rankRecent(List<T> elements, ToLongFunction<T> usage) {
+		ArrayList<T> copy = new ArrayList<>(elements);
+		IdentityHashMap<T, Long> usages = new IdentityHashMap<>();
+		for (T element : copy) {
+			usages.put(element, usage.applyAsLong(element));
+		}
+		copy.sort((a, b) -> Long.compare(usages.get(b), usages.get(a)));
+		return copy;
+	}
+
+	/**
+	 * Re-ranks every ingredient and menu item, after their usages were restored or the menu was reloaded.
+	 */
+	public void refresh() {
+		ingredientRanking.rebuild(ingredients);
+		menuRanking.rebuild(menuItems);
 	}
 
 	/**
@@ -112,14 +219,26 @@ public class Statistics {
 	 * @param order order to account for in the statistics
 	 */
 	public void update(Order order) {
-		order.getItem().use();
+		long now = System.currentTimeMillis();
+		synchronized (menuItems) { // the menu may have been reloaded since the order was taken
+			MenuItem item = menuItems.current(order.getItem());
+			if (item != null) {
+				item.use();
+				item.getRecentUsage().add(now, 1);
+				menuRanking.update(item);
+			}
+		}
 
-		order.getAllIngredients().forEach(Ingredient::updateUsage);
+		IngredientVector used = order.getIngredients();
+		for (int i = 0; i < used.size(); i++) {
+			used.ingredient(i).updateUsage(used.amount(i));
+			used.ingredient(i).getRecentUsage().add(now, used.amount(i));
+			ingredientRanking.update(used.ingredient(i));
+		}
 		managers.forEach(manager -> {
 			manager.updateMenuStat();
 			manager.updateIngredientStat();
 		});
-		backup();
 	}
 
 	/**
@@ -130,20 +249,26 @@ public class Statistics {
 	}
 
 	/**
-	 * Backups the statistics, i.e. ingredient usage and menu item total orders, of the restaurant.
+	 * Backups the statistics, i.e. ingredient usage and menu item total orders, of the restaurant. Called by the
+	 * restaurant's EventJournal when it flushes; changes in between are kept by the journal.
 	 */
-    private void backup() {
+	public void backup() {
+		ReorderEngine engine = ingredientManager.getReorderEngine();
 		JSONArray data = new JSONArray();
 		for (Ingredient item : ingredients) {
 			JSONObject obj = new JSONObject();
 			obj.put("displayName", item.getDisplayName());
 			obj.put("usage", item.getUsage());
+			obj.put("usageRate", engine.getRecordedRate(item));
+			obj.put("usageMoment", engine.getMoment(item));
+			obj.put("usageUpdated", engine.getUpdated(item));
 			data.add(obj);
 		}
 
-		try (FileWriter file = new FileWriter(BACKUP_I)) {
-			file.write(data.toJSONString());
-		} catch (Exception ignored) {
+		try {
+			AtomicFile.write(new File(BACKUP_I), data.toJSONString());
+		} catch (IOException e) {
+			System.err.println("Unable to back up the ingredient statistics: " + e.getMessage());
 		}
 
 
@@ -155,9 +280,10 @@ public class Statistics {
 			data.add(obj);
 		}
 
-		try (FileWriter file = new FileWriter(BACKUP_M, false)) {
-			file.write(data.toJSONString());
-		} catch (Exception ignored) {
+		try {
+			AtomicFile.write(new File(BACKUP_M), data.toJSONString());
+		} catch (IOException e) {
+			System.err.println("Unable to back up the menu statistics: " + e.getMessage());
 		}
 	}
 
@@ -177,7 +303,18 @@ public class Statistics {
 
 				String displayName = (String) ingredientObject.get("displayName");
 				int usage = ((Long) ingredientObject.get("usage")).intValue();
-				ingredientManager.getIngredient(displayName).setUsage(usage);
+				try {
+					Ingredient ingredient = ingredientManager.getIngredient(displayName);
+					ingredient.setUsage(usage);
+					if (ingredientObject.get("usageUpdated") != null) {
+						ingredientManager.getReorderEngine().restore(ingredient,
+								((Number) ingredientObject.get("usageRate")).doubleValue(),
+								((Number) ingredientObject.get("usageMoment")).doubleValue(),
+								((Number) ingredientObject.get("usageUpdated")).longValue());
+					}
+				} catch (UnknownIngredientException e) {
+					System.err.println(e.getMessage() + " in ingredient statistics, skipping it");
+				}
 			}
 		} catch (ParseException | IOException e) {
 			e.printStackTrace();
@@ -200,7 +337,10 @@ public class Statistics {
 
 				String name = (String) ingredientObject.get("name");
 				int usage = ((Long) ingredientObject.get("usage")).intValue();
-				menuItems.get(name).setUsage(usage);
+				MenuItem menuItem = menuItems.get(name);
+				if (menuItem != null) {
+					menuItem.setUsage(usage);
+				}
 			}
 		} catch (ParseException | IOException e) {
 			e.printStackTrace();
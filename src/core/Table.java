@@ -1,9 +1,14 @@
 package core;
 
 import events.GetBillEvent;
+import util.Money;
 import visual.gui.Server;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 
 /**
  * Represents a table at a restaurant.
@@ -24,6 +29,15 @@ public class Table implements Comparable {
      */
     private final ArrayList<ArrayList<Order>> seatOrders;
 
+    private int orderCount; // the number of orders at this table
+    private final HashSet<Order> activeOrders; // the orders at this table which are not yet delivered
+    private TableRegistry registry; // the registry indexing this table, if any
+
+    private final long[] seatSubtotals; // the running price in cents of each seat's delivered orders
+    private long subtotal; // the running price in cents of all delivered orders
+    private final HashSet<Order> billed; // the delivered orders counted in the subtotals
+    private int occupiedSeats; // the number of seats with at least one order
+
     /**
      * Creates a table with a particular table number and number of seats.
      *
@@ -39,6 +53,32 @@ public class Table implements Comparable {
         for (int i = 0; i < numberOfSeats; i++) {
             seatOrders.add(new ArrayList<>());
         }
+
+        orderCount = 0;
+        activeOrders = new HashSet<>();
+
+        seatSubtotals = new long[numberOfSeats];
+        subtotal = 0;
+        billed = new HashSet<>();
+        occupiedSeats = 0;
+    }
+
+    /**
+     * Sets the registry which indexes this table.
+     *
+     * @param registry a TableRegistry.
+     */
+    void setRegistry(TableRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Notifies the registry, if any, that this table's orders have changed.
+     */
+    private void changed() {
+        if (registry != null) {
+            registry.update(this);
+        }
     }
 
     /**
@@ -57,8 +97,11 @@ public class Table implements Comparable {
      */
 
     public void setServer(Server server) {
-        if (this.server == null) {
+        if (this.server == null && server != null) {
             this.server = server;
+            if (registry != null) {
+                registry.assign(this, server);
+            }
         }
 
     }
@@ -86,6 +129,13 @@ public class Table implements Comparable {
      */
     public void clearOrders() {
         seatOrders.forEach(ArrayList::clear);
+        orderCount = 0;
+        activeOrders.clear();
+        billed.clear();
+        Arrays.fill(seatSubtotals, 0);
+        subtotal = 0;
+        occupiedSeats = 0;
+        changed();
     }
 
     /**
@@ -94,7 +144,17 @@ public class Table implements Comparable {
      * @param seat the seat number whose orders should be removed.
      */
     public void clearOrders(int seat) {
-        seatOrders.get(seat - 1).clear();
+        ArrayList<Order> orders = seatOrders.get(seat - 1);
+        if (!orders.isEmpty()) {
+            occupiedSeats--;
+        }
+        orderCount -= orders.size();
+        orders.forEach(activeOrders::remove);
+        orders.forEach(billed::remove);
+        subtotal -= seatSubtotals[seat - 1];
+        seatSubtotals[seat - 1] = 0;
+        orders.clear();
+        changed();
     }
 
     /**
@@ -103,7 +163,30 @@ public class Table implements Comparable {
      * @param order the order that is being added to the bill.
      */
     public void updateBill(Order order) {
-        seatOrders.get(order.getSeatNumber() - 1).add(order);
+        ArrayList<Order> orders = seatOrders.get(order.getSeatNumber() - 1);
+        if (orders.isEmpty()) {
+            occupiedSeats++;
+        }
+        orders.add(order);
+        orderCount++;
+        if (order.getProgress() == Order.ORDER_DELIVERED) {
+            bill(order);
+        } else if (!order.isDelivered()) {
+            activeOrders.add(order);
+        }
+        changed();
+    }
+
+    /**
+     * Adds a delivered order's price to the running subtotals.
+     *
+     * @param order the delivered order.
+     */
+    private void bill(Order order) {
+        if (billed.add(order)) {
+            seatSubtotals[order.getSeatNumber() - 1] += order.getPrice();
+            subtotal += order.getPrice();
+        }
     }
 
     /**
@@ -113,8 +196,31 @@ public class Table implements Comparable {
      */
     public void removeOrder(Order order) {
         ArrayList<Order> orders = seatOrders.get(order.getSeatNumber() - 1);
-        if (orders.contains(order)) {
-            orders.remove(order);
+        if (orders.remove(order)) {
+            if (orders.isEmpty()) {
+                occupiedSeats--;
+            }
+            orderCount--;
+            activeOrders.remove(order);
+            if (billed.remove(order)) {
+                seatSubtotals[order.getSeatNumber() - 1] -= order.getPrice();
+                subtotal -= order.getPrice();
+            }
+            changed();
+        }
+    }
+
+    /**
+     * Marks an order at this table as no longer active, i.e. delivered or cancelled.
+     *
+     * @param order the order that was delivered.
+     */
+    void orderDelivered(Order order) {
+        if (activeOrders.remove(order)) {
+            if (order.getProgress() == Order.ORDER_DELIVERED) {
+                bill(order);
+            }
+            changed();
         }
     }
 
@@ -139,15 +245,41 @@ public class Table implements Comparable {
         return all;
     }
 
+    /**
+     * Gets the orders of a particular seat.
+     *
+     * @param seat the seat number.
+     * @return an unmodifiable list of the seat's orders.
+     */
+    public List<Order> getOrders(int seat) {
+        return Collections.unmodifiableList(seatOrders.get(seat - 1));
+    }
+
     /**
      * Checks if a table as any active orders
      *
      * @return a boolean if this table has active orders, false otherwise
      */
     public boolean hasActiveOrders() {
-        // exists an x such that not P(x)
-        // not forall x, P(x)
-        return !this.getOrders().stream().allMatch(Order::isDelivered);
+        return !activeOrders.isEmpty();
+    }
+
+    /**
+     * Returns the number of orders at this table.
+     *
+     * @return the number of orders.
+     */
+    public int getOrderCount() {
+        return orderCount;
+    }
+
+    /**
+     * Returns the number of orders at this table which are not yet delivered.
+     *
+     * @return the number of active orders.
+     */
+    public int getActiveOrderCount() {
+        return activeOrders.size();
     }
 
     /**
@@ -156,7 +288,7 @@ public class Table implements Comparable {
      * @return true if this table is occupied, false otherwise.
      */
     public boolean isOccupied() {
-        return this.seatOrders.stream().filter(a -> !a.isEmpty()).count() > 0;
+        return orderCount > 0;
     }
 
     /**
@@ -172,54 +304,54 @@ public class Table implements Comparable {
     /**
      * Returns the total amount of the bill including tax and tip.
      *
-     * @return the total bill amount.
+     * @return the total bill amount, in cents.
      */
-    public double getTotalBillAmount() {
-        double basePrice = getBasePrice();
+    public long getTotalBillAmount() {
+        long basePrice = getBasePrice();
         return basePrice + getTipAmount(basePrice) + getTaxAmount(basePrice);
     }
 
     /**
      * Returns  the tip amount when a table is greater than or equal to 8.
      *
-     * @param base the base amount to be paid
-     * @return the amount of tip that needs to be paid,
+     * @param base the base amount to be paid, in cents
+     * @return the amount of tip that needs to be paid, in cents
      */
-    public double getTipAmount(double base) {
-        return this.seatOrders.stream().filter(a -> !a.isEmpty()).count() >= 8 ? base * GetBillEvent.AUTOMATIC_TIP_AMOUNT : 0d;
+    public long getTipAmount(long base) {
+        return occupiedSeats >= 8 ? Money.percent(base, GetBillEvent.AUTOMATIC_TIP_BASIS_POINTS) : 0;
     }
 
     /**
      * Returns the base price of a table's orders.
      *
-     * @return the base price.
+     * @return the base price, in cents.
      */
-    public double getBasePrice() {
-        return this.getOrders().stream().mapToDouble(a -> a.isDelivered() ? a.getPrice() : 0).sum();
+    public long getBasePrice() {
+        return subtotal;
     }
 
     /**
      * Returns the base price of this seat
      *
      * @param seat the seat
-     * @return the base price
+     * @return the base price, in cents
      */
-    public double getBasePrice(int seat) {
-        if (this.tableCapacity < seat)
+    public long getBasePrice(int seat) {
+        if (this.tableCapacity < seat || seat < 1)
             return 0;
 
-        return this.seatOrders.get(seat - 1).stream().mapToDouble(a -> a.isDelivered() ? a.getPrice() : 0).sum();
+        return seatSubtotals[seat - 1];
 
     }
 
     /**
      * Returns the tax amount of a table's orders.
      *
-     * @param base the base amount to be paid
-     * @return the tax amount
+     * @param base the base amount to be paid, in cents
+     * @return the tax amount, in cents
      */
-    public double getTaxAmount(double base) {
-        return base * GetBillEvent.TAX_AMOUNT;
+    public long getTaxAmount(long base) {
+        return Money.percent(base, GetBillEvent.TAX_BASIS_POINTS);
     }
 
     /**
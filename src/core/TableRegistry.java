@@ -0,0 +1,136 @@
+package core;
+
+import visual.gui.Server;
+
+import java.util.*;
+
+/**
+ * A registry of a restaurant's tables. Tables are indexed by their table number, and live indexes are kept of the
+ * occupied tables, the tables with active orders and the tables of each server. The indexes are returned as copies
+ * taken under the registry's lock, so they can be iterated while tables change on other threads.
+ */
+public class TableRegistry {
+    private final ArrayList<Table> tables; // All tables, in layout order
+    private final HashMap<Integer, Table> byNumber; // Tables indexed by their table number
+    private final LinkedHashSet<Table> occupied; // Tables that currently have orders
+    private final LinkedHashSet<Table> active; // Tables that have orders which are not yet delivered
+    private final HashMap<Server, LinkedHashSet<Table>> byServer; // Tables indexed by their server
+
+    /**
+     * Creates an empty TableRegistry.
+     */
+    public TableRegistry() {
+        tables = new ArrayList<>();
+        byNumber = new HashMap<>();
+        occupied = new LinkedHashSet<>();
+        active = new LinkedHashSet<>();
+        byServer = new HashMap<>();
+    }
+
+    /**
+     * Adds a table to the registry.
+     *
+     * @param table the table to add.
+     */
+    public synchronized void add(Table table) {
+        if (byNumber.containsKey(table.getTableNumber())) {
+            System.err.println("Duplicate table number " + table.getTableNumber());
+            return;
+        }
+
+        tables.add(table);
+        byNumber.put(table.getTableNumber(), table);
+        table.setRegistry(this);
+
+        update(table);
+        if (table.getServer() != null) {
+            assign(table, table.getServer());
+        }
+    }
+
+    /**
+     * Gets the table with the specified table number.
+     *
+     * @param tableNumber the number of the table.
+     * @return the table with the specified table number, or null if it doesn't exist.
+     */
+    public synchronized Table get(int tableNumber) {
+        return byNumber.get(tableNumber);
+    }
+
+    /**
+     * Returns all of the tables, in layout order.
+     *
+     * @return a list of tables.
+     */
+    public ArrayList<Table> getTables() {
+        return tables;
+    }
+
+    /**
+     * Returns the tables that currently have orders.
+     *
+     * @return an unmodifiable copy of the occupied tables.
+     */
+    public synchronized Set<Table> getOccupied() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(occupied));
+    }
+
+    /**
+     * Returns the tables that have orders which are not yet delivered.
+     *
+     * @return an unmodifiable copy of the tables with active orders.
+     */
+    public synchronized Set<Table> getActive() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(active));
+    }
+
+    /**
+     * Returns the tables served by a server.
+     *
+     * @param server a server.
+     * @return an unmodifiable copy of the server's tables.
+     */
+    public synchronized Set<Table> getTables(Server server) {
+        LinkedHashSet<Table> served = byServer.get(server);
+        return served == null ? Collections.emptySet() : Collections.unmodifiableSet(new LinkedHashSet<>(served));
+    }
+
+    /**
+     * Re-indexes a table after its orders have changed.
+     *
+     * @param table the table that changed.
+     */
+    synchronized void update(Table table) {
+        if (table.getOrderCount() > 0) {
+            occupied.add(table);
+        } else {
+            occupied.remove(table);
+        }
+
+        if (table.getActiveOrderCount() > 0) {
+            active.add(table);
+        } else {
+            active.remove(table);
+        }
+    }
+
+    /**
+     * Indexes a table under its server.
+     *
+     * @param table  the table.
+     * @param server the table's server.
+     */
+    synchronized void assign(Table table, Server server) {
+        byServer.computeIfAbsent(server, k -> new LinkedHashSet<>()).add(table);
+    }
+
+    /**
+     * Returns the number of tables in the registry.
+     *
+     * @return the number of tables.
+     */
+    public int size() {
+        return tables.size();
+    }
+}
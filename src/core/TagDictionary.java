@@ -0,0 +1,109 @@
+package core;
+
+import java.util.*;
+
+/**
+ * Interns menu tags. Each distinct tag, compared case-insensitively, is given a bit index, and sets of tags are
+ * represented as interned BitSets so that identical tag sets share one instance.
+ * <p>
+ * A tag keeps its bit for the life of the dictionary, even across a reset, so that tag sets held outside the menu,
+ * such as those of the kitchen stations, stay valid when the menu is reloaded.
+ */
+public class TagDictionary {
+    private final HashMap<String, Integer> bits; // The bit index of each tag, keyed by lower-case name
+    private final ArrayList<String> names; // The display name of each tag, indexed by bit
+    private final HashMap<BitSet, BitSet> interned; // Canonical instances of tag sets
+    private final BitSet current; // The bits of the tags interned since the last reset
+
+    /**
+     * Creates an empty TagDictionary.
+     */
+    public TagDictionary() {
+        bits = new HashMap<>();
+        names = new ArrayList<>();
+        interned = new HashMap<>();
+        current = new BitSet();
+    }
+
+    /**
+     * Returns the bit index of a tag, assigning a new one if the tag has not been seen before.
+     *
+     * @param tag the tag.
+     * @return its bit index.
+     */
+    public synchronized int intern(String tag) {
+        String key = tag.trim().toLowerCase();
+        Integer bit = bits.get(key);
+        if (bit == null) {
+            bit = names.size();
+            bits.put(key, bit);
+            names.add(tag.trim());
+        }
+        current.set(bit);
+        return bit;
+    }
+
+    /**
+     * Returns the bit index of a known tag.
+     *
+     * @param tag the tag.
+     * @return its bit index, or -1 if the tag is unknown.
+     */
+    public synchronized int indexOf(String tag) {
+        Integer bit = bits.get(tag.trim().toLowerCase());
+        return bit == null ? -1 : bit;
+    }
+
+    /**
+     * Returns the canonical tag set for a collection of tags, interning any new tags. The returned set is shared
+     * and must not be modified.
+     *
+     * @param tags the tags.
+     * @return the interned tag set.
+     */
+    public synchronized BitSet intern(Collection<String> tags) {
+        BitSet set = new BitSet();
+        if (tags != null) {
+            for (String tag : tags) {
+                if (tag != null && !tag.trim().isEmpty()) {
+                    set.set(intern(tag));
+                }
+            }
+        }
+
+        BitSet canonical = interned.putIfAbsent(set, set);
+        return canonical == null ? set : canonical;
+    }
+
+    /**
+     * Returns the display names of the tags in a tag set.
+     *
+     * @param set a tag set.
+     * @return a list of tag names.
+     */
+    public synchronized ArrayList<String> names(BitSet set) {
+        ArrayList<String> result = new ArrayList<>();
+        for (int bit = set.nextSetBit(0); bit >= 0; bit = set.nextSetBit(bit + 1)) {
+            result.add(names.get(bit));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the display names of the tags interned since the last reset, i.e. the tags in use.
+     *
+     * @return an unmodifiable list of tag names, in bit order.
+     */
+    public synchronized List<String> getTags() {
+        return Collections.unmodifiableList(names(current));
+    }
+
+    /**
+     * Forgets the interned tag sets and which tags are in use, e.g. before the menu is reloaded. Tags keep their
+     * bits.
+     */
+    public synchronized void reset() {
+        interned.clear();
+        current.clear();
+    }
+}
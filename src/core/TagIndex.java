@@ -0,0 +1,137 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+
+/**
+ * An inverted index from menu tags to the menu items that have them. Each item is given an ordinal when it is
+ * indexed, and each tag maps to a BitSet of item ordinals, so a TagQuery is evaluated with a few word-wide bit
+ * operations per clause.
+ */
+public class TagIndex {
+    private final TagDictionary dictionary; // The dictionary giving each tag its bit
+    private final ArrayList<MenuItem> items; // The indexed items by ordinal, null once removed
+    private final ArrayList<BitSet> postings; // The ordinals of the items with each tag, indexed by tag bit
+    private final BitSet live; // The ordinals of the items still indexed
+
+    /**
+     * Creates an empty TagIndex.
+     *
+     * @param dictionary the dictionary the items' tags were interned in.
+     */
+    public TagIndex(TagDictionary dictionary) {
+        this.dictionary = dictionary;
+        this.items = new ArrayList<>();
+        this.postings = new ArrayList<>();
+        this.live = new BitSet();
+    }
+
+    /**
+     * Adds a menu item to the index, giving it the next ordinal.
+     *
+     * @param item the item to add.
+     * @return the item's ordinal.
+     */
+    public synchronized int add(MenuItem item) {
+        int ordinal = items.size();
+        items.add(item);
+        live.set(ordinal);
+
+        BitSet tags = item.getTagSet();
+        for (int bit = tags.nextSetBit(0); bit >= 0; bit = tags.nextSetBit(bit + 1)) {
+            while (postings.size() <= bit) {
+                postings.add(new BitSet());
+            }
+            postings.get(bit).set(ordinal);
+        }
+        return ordinal;
+    }
+
+    /**
+     * Removes a menu item from the index.
+     *
+     * @param item the item to remove.
+     */
+    public synchronized void remove(MenuItem item) {
+        int ordinal = item.getOrdinal();
+        if (ordinal < 0 || ordinal >= items.size() || items.get(ordinal) != item) {
+            return;
+        }
+
+        items.set(ordinal, null);
+        live.clear(ordinal);
+        BitSet tags = item.getTagSet();
+        for (int bit = tags.nextSetBit(0); bit >= 0; bit = tags.nextSetBit(bit + 1)) {
+            postings.get(bit).clear(ordinal);
+        }
+    }
+
+    /**
+     * Removes every item from the index. Ordinals are given out from 0 again.
+     */
+    public synchronized void clear() {
+        items.clear();
+        postings.clear();
+        live.clear();
+    }
+
+    /**
+     * Returns the ordinals of the items with a tag.
+     *
+     * @param tag the tag.
+     * @return a new BitSet of ordinals, empty if the tag is unknown.
+     */
+    public synchronized BitSet tagged(String tag) {
+        return (BitSet) posting(tag).clone();
+    }
+
+    /**
+     * Evaluates a query.
+     *
+     * @param query the query.
+     * @return a new BitSet of the ordinals of the matching items.
+     */
+    public synchronized BitSet evaluate(TagQuery query) {
+        BitSet result = (BitSet) live.clone();
+        for (TagQuery.Clause clause : query.getClauses()) {
+            BitSet any = new BitSet();
+            for (String tag : clause.getTags()) {
+                any.or(posting(tag));
+            }
+
+            if (clause.isNegated()) {
+                result.andNot(any);
+            } else {
+                result.and(any);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the items with the given ordinals.
+     *
+     * @param ordinals a set of ordinals.
+     * @return the items, in ordinal order.
+     */
+    public synchronized ArrayList<MenuItem> items(BitSet ordinals) {
+        ArrayList<MenuItem> result = new ArrayList<>(ordinals.cardinality());
+        for (int i = ordinals.nextSetBit(0); i >= 0 && i < items.size(); i = ordinals.nextSetBit(i + 1)) {
+            if (items.get(i) != null) {
+                result.add(items.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the posting list of a tag.
+     *
+     * @param tag the tag.
+     * @return the ordinals of the items with the tag; must not be modified.
+     */
+    private BitSet posting(String tag) {
+        int bit = dictionary.indexOf(tag);
+        return bit < 0 || bit >= postings.size() ? new BitSet() : postings.get(bit);
+    }
+}
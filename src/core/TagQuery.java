@@ -0,0 +1,147 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A query over menu tags: a conjunction of clauses, each of which requires, or with NOT forbids, any one of a set
+ * of tags. In text form, clauses are separated by whitespace, alternatives by "|", and a leading "-" negates a
+ * clause, e.g. "vegan|vegetarian -spicy". A leading "#" on a tag is ignored.
+ */
+public class TagQuery {
+    /**
+     * A clause of a query.
+     */
+    public static final class Clause {
+        private final List<String> tags; // The alternative tags, any of which satisfies the clause
+        private final boolean negated; // If the clause forbids the tags instead of requiring them
+
+        /**
+         * Creates a clause.
+         *
+         * @param tags    the alternative tags.
+         * @param negated true if the clause forbids the tags.
+         */
+        private Clause(List<String> tags, boolean negated) {
+            this.tags = Collections.unmodifiableList(tags);
+            this.negated = negated;
+        }
+
+        /**
+         * Returns the alternative tags of the clause.
+         *
+         * @return a list of tags.
+         */
+        public List<String> getTags() {
+            return tags;
+        }
+
+        /**
+         * Returns if the clause forbids its tags instead of requiring them.
+         *
+         * @return true if the clause is negated.
+         */
+        public boolean isNegated() {
+            return negated;
+        }
+    }
+
+    private final ArrayList<Clause> clauses; // The clauses, all of which must hold
+
+    /**
+     * Creates an empty query, which matches every item.
+     */
+    public TagQuery() {
+        clauses = new ArrayList<>();
+    }
+
+    /**
+     * Parses a query from its text form.
+     *
+     * @param text the query, e.g. "vegan|vegetarian -spicy".
+     * @return the query.
+     */
+    public static TagQuery parse(String text) {
+        TagQuery query = new TagQuery();
+        if (text == null) {
+            return query;
+        }
+
+        for (String term : text.trim().split("\\s+")) {
+            boolean negated = term.startsWith("-");
+            if (negated) {
+                term = term.substring(1);
+            }
+
+            ArrayList<String> tags = new ArrayList<>();
+            for (String tag : term.split("\\|")) {
+                tag = tag.startsWith("#") ? tag.substring(1) : tag;
+                if (!tag.isEmpty()) {
+                    tags.add(tag);
+                }
+            }
+            if (!tags.isEmpty()) {
+                query.clauses.add(new Clause(tags, negated));
+            }
+        }
+        return query;
+    }
+
+    /**
+     * Adds a clause requiring all of the given tags.
+     *
+     * @param tags the required tags.
+     * @return this query.
+     */
+    public TagQuery and(String... tags) {
+        for (String tag : tags) {
+            clauses.add(new Clause(Collections.singletonList(tag), false));
+        }
+        return this;
+    }
+
+    /**
+     * Adds a clause requiring any one of the given tags.
+     *
+     * @param tags the alternative tags.
+     * @return this query.
+     */
+    public TagQuery or(String... tags) {
+        ArrayList<String> list = new ArrayList<>();
+        Collections.addAll(list, tags);
+        clauses.add(new Clause(list, false));
+        return this;
+    }
+
+    /**
+     * Adds a clause forbidding every one of the given tags.
+     *
+     * @param tags the forbidden tags.
+     * @return this query.
+     */
+    public TagQuery not(String... tags) {
+        ArrayList<String> list = new ArrayList<>();
+        Collections.addAll(list, tags);
+        clauses.add(new Clause(list, true));
+        return this;
+    }
+
+    /**
+     * Returns the clauses of the query.
+     *
+     * @return an unmodifiable list of clauses.
+     */
+    public List<Clause> getClauses() {
+        return Collections.unmodifiableList(clauses);
+    }
+
+    /**
+     * Returns if the query has no clauses and so matches every item.
+     *
+     * @return true if the query is empty.
+     */
+    public boolean isEmpty() {
+        return clauses.isEmpty();
+    }
+}
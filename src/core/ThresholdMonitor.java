@@ -0,0 +1,150 @@
+package core;
+
+import util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+
+/**
+ * Incrementally monitors ingredient reorder points, as planned by the ReorderEngine. Only ingredients whose stock
+ * changed since the last check are re-evaluated, and the requests file is rewritten at most once per check, and
+ * only when the re-orders actually changed. Checks are mutually exclusive, as each one evaluates the re-orders and
+ * writes them.
+ * <p>
+ * The quantity of a re-order is planned once, when the ingredient falls below its reorder point, and kept while the
+ * stock keeps falling; it is only planned again when the ingredient crosses the reorder point again, or when its
+ * stock goes up, e.g. because a shipment arrived. Otherwise every use would change the quantity by the amount used.
+ */
+public class ThresholdMonitor implements InventoryListener {
+    private final IngredientManager ingredientManager; // The manager holding the re-orders
+    private final Restaurant res; // The restaurant, for logging
+    private final LinkedHashSet<Ingredient> dirty; // Ingredients changed since the last check
+    private final Object checking = new Object(); // Held while checking; guards planned and the re-orders
+    private final HashMap<Ingredient, Integer> planned = new HashMap<>(); // Stock when each re-order was planned
+
+    private long checks = 0; // Number of ingredient threshold evaluations performed
+    private long checksAvoided = 0; // Number of ingredient evaluations skipped since the stock had not changed
+    private long writes = 0; // Number of times the requests file was written
+    private long writesAvoided = 0; // Number of requests file writes skipped compared to one per ingredient
+
+    /**
+     * Creates a ThresholdMonitor over all the ingredients of an IngredientManager.
+     *
+     * @param ingredientManager the IngredientManager.
+     * @param res               the restaurant.
+     */
+    ThresholdMonitor(IngredientManager ingredientManager, Restaurant res) {
+        this.ingredientManager = ingredientManager;
+        this.res = res;
+        this.dirty = new LinkedHashSet<>();
+
+        for (Ingredient ingredient : ingredientManager.getIngredients()) {
+            ingredient.addListener(this);
+            dirty.add(ingredient);
+        }
+    }
+
+    /**
+     * Marks an ingredient for re-evaluation at the next check.
+     *
+     * @param ingredient the ingredient that changed.
+     */
+    @Override
+    public synchronized void amountChanged(Ingredient ingredient) {
+        dirty.add(ingredient);
+    }
+
+    /**
+     * Re-evaluates the thresholds of all changed ingredients, and rewrites the requests file once if the set of
+     * re-orders changed. Waits for any check in progress on another thread.
+     */
+    public void check() {
+        synchronized (checking) {
+            ArrayList<Ingredient> changed;
+            synchronized (this) {
+                changed = new ArrayList<>(dirty);
+                dirty.clear();
+            }
+
+            int total = ingredientManager.getIngredients().size();
+            boolean reordersChanged = false;
+
+            ReorderEngine engine = ingredientManager.getReorderEngine();
+            for (Ingredient a : changed) {
+                int amount = a.getAmount();
+                if (amount < engine.getReorderPoint(a)) {
+                    Integer stock = planned.get(a);
+                    if (stock != null && amount <= stock && ingredientManager.isInReorder(a)) {
+                        continue; // still falling since the re-order was planned
+                    }
+                    planned.put(a, amount);
+                    int quantity = engine.getOrderQuantity(a);
+                    if (ingredientManager.getReorderQuantity(a) != quantity)
+                        Log.log(res, String.format("Now requesting %s units of %s", quantity, a.getDisplayName()));
+                    reordersChanged |= ingredientManager.reorderIngredient(a, quantity);
+                } else {
+                    planned.remove(a);
+                    reordersChanged |= ingredientManager.removeReorderIngredient(a);
+                }
+            }
+
+            // The first check always writes, so that requests left over from a previous run are replaced
+            boolean write = reordersChanged || getWrites() == 0;
+            if (write) {
+                ingredientManager.updateRequestsFile();
+            }
+
+            synchronized (this) {
+                checks += changed.size();
+                checksAvoided += total - changed.size();
+                writes += write ? 1 : 0;
+                writesAvoided += total - (write ? 1 : 0);
+            }
+        }
+    }
+
+    /**
+     * Marks every ingredient for re-evaluation at the next check.
+     */
+    public synchronized void markAll() {
+        dirty.addAll(ingredientManager.getIngredients());
+    }
+
+    /**
+     * Returns the number of ingredient threshold evaluations performed.
+     *
+     * @return the number of checks.
+     */
+    public synchronized long getChecks() {
+        return checks;
+    }
+
+    /**
+     * Returns the number of ingredient threshold evaluations skipped because the ingredient had not changed.
+     *
+     * @return the number of checks avoided.
+     */
+    public synchronized long getChecksAvoided() {
+        return checksAvoided;
+    }
+
+    /**
+     * Returns the number of times the requests file was written.
+     *
+     * @return the number of writes.
+     */
+    public synchronized long getWrites() {
+        return writes;
+    }
+
+    /**
+     * Returns the number of requests file writes avoided, compared to rewriting the file once per ingredient on
+     * every check.
+     *
+     * @return the number of writes avoided.
+     */
+    public synchronized long getWritesAvoided() {
+        return writesAvoided;
+    }
+}
@@ -0,0 +1,39 @@
+package core;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Thrown when an ingredient is looked up by a name that no ingredient has.
+ */
+public class UnknownIngredientException extends Exception {
+    private final List<String> names; // The names that could not be resolved
+
+    /**
+     * Creates an UnknownIngredientException for one or more names.
+     *
+     * @param names the names that could not be resolved.
+     */
+    public UnknownIngredientException(List<String> names) {
+        super("Unknown ingredient" + (names.size() == 1 ? " " : "s ") + String.join(", ", names));
+        this.names = Collections.unmodifiableList(names);
+    }
+
+    /**
+     * Creates an UnknownIngredientException for a name.
+     *
+     * @param name the name that could not be resolved.
+     */
+    public UnknownIngredientException(String name) {
+        this(Collections.singletonList(name));
+    }
+
+    /**
+     * Returns the names that could not be resolved.
+     *
+     * @return an unmodifiable list of names.
+     */
+    public List<String> getNames() {
+        return names;
+    }
+}
@@ -0,0 +1,191 @@
+package core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Counts the recent usage of a menu item or ingredient in rolling windows: per minute over the last hour, per hour
+ * over the last two days and per day over the last 90 days. Each window is a ring of buckets stamped with the time
+ * unit they count, so a bucket left over from an earlier lap of the ring is recognized as stale and reset when its
+ * slot is reused. Adding usage costs O(1) and allocates nothing.
+ * <p>
+ * Buckets are aligned to UTC, so the day buckets start at midnight UTC.
+ */
+public final class UsageCounter {
+    /**
+     * The granularity of a window.
+     */
+    public enum Window {
+        MINUTE(60000L, 60),
+        HOUR(3600000L, 48),
+        DAY(86400000L, 90);
+
+        private final long millis; // The length of a bucket, in milliseconds
+        private final int buckets; // The number of buckets kept
+
+        /**
+         * Creates a Window.
+         *
+         * @param millis  the length of a bucket, in milliseconds.
+         * @param buckets the number of buckets kept.
+         */
+        Window(long millis, int buckets) {
+            this.millis = millis;
+            this.buckets = buckets;
+        }
+
+        /**
+         * Returns the number of buckets kept, i.e. the longest span that can be queried.
+         *
+         * @return the number of buckets.
+         */
+        public int getBuckets() {
+            return buckets;
+        }
+    }
+
+    private static final Window[] WINDOWS = Window.values(); // The windows, by ordinal
+    private final long[][] counts = new long[WINDOWS.length][]; // The usage in each bucket of each window
+    private final long[][] stamps = new long[WINDOWS.length][]; // The time unit each bucket counts, or -1
+
+    /**
+     * Creates an empty UsageCounter.
+     */
+    public UsageCounter() {
+        for (Window window : WINDOWS) {
+            counts[window.ordinal()] = new long[window.buckets];
+            stamps[window.ordinal()] = new long[window.buckets];
+            Arrays.fill(stamps[window.ordinal()], -1);
+        }
+    }
+
+    /**
+     * Adds usage at a time.
+     *
+     * @param time   the time of the usage, in milliseconds.
+     * @param amount the amount used.
+     */
+    public synchronized void add(long time, long amount) {
+        for (Window window : WINDOWS) {
+            long unit = time / window.millis;
+            int slot = (int) (unit % window.buckets);
+            long[] stamp = stamps[window.ordinal()];
+            long[] count = counts[window.ordinal()];
+            if (stamp[slot] != unit) {
+                if (stamp[slot] > unit) {
+                    continue; // older than the window
+                }
+                stamp[slot] = unit;
+                count[slot] = 0;
+            }
+            count[slot] += amount;
+        }
+    }
+
+    /**
+     * Returns the usage over the last units of a window, up to now.
+     *
+     * @param window the granularity.
+     * @param units  the number of units, including the current one; at most the window's number of buckets.
+     * @return the usage.
+     */
+    public long sum(Window window, int units) {
+        return sum(window, units, System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the usage over the last units of a window, up to a time.
+     *
+     * @param window the granularity.
+     * @param units  the number of units, including the one of the time; at most the window's number of buckets.
+     * @param now    the time, in milliseconds.
+     * @return the usage.
+     */
+    public synchronized long sum(Window window, int units, long now) {
+        if (units > window.buckets) {
+            throw new IllegalArgumentException("At most " + window.buckets + " " + window + " buckets are kept");
+        }
+        long last = now / window.millis;
+        long[] stamp = stamps[window.ordinal()];
+        long[] count = counts[window.ordinal()];
+        long sum = 0;
+        for (int i = 0; i < window.buckets; i++) {
+            if (stamp[i] <= last && stamp[i] > last - units) {
+                sum += count[i];
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Writes the non-empty buckets to a stream.
+     *
+     * @param out the stream.
+     * @throws IOException if the buckets cannot be written.
+     */
+    synchronized void write(DataOutputStream out) throws IOException {
+        for (Window window : WINDOWS) {
+            long[] stamp = stamps[window.ordinal()];
+            long[] count = counts[window.ordinal()];
+            int used = 0;
+            for (int i = 0; i < window.buckets; i++) {
+                if (stamp[i] >= 0 && count[i] != 0) {
+                    used++;
+                }
+            }
+            out.writeShort(used);
+            for (int i = 0; i < window.buckets; i++) {
+                if (stamp[i] >= 0 && count[i] != 0) {
+                    out.writeInt((int) stamp[i]);
+                    out.writeLong(count[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads buckets written by write from a stream, replacing the buckets of this counter.
+     *
+     * @param in the stream.
+     * @throws IOException if the buckets cannot be read.
+     */
+    synchronized void read(DataInputStream in) throws IOException {
+        for (Window window : WINDOWS) {
+            long[] stamp = stamps[window.ordinal()];
+            long[] count = counts[window.ordinal()];
+            Arrays.fill(stamp, -1);
+            Arrays.fill(count, 0);
+            int used = in.readUnsignedShort();
+            for (int i = 0; i < used; i++) {
+                long unit = in.readInt() & 0xffffffffL;
+                int slot = (int) (unit % window.buckets);
+                stamp[slot] = unit;
+                count[slot] = in.readLong();
+            }
+        }
+    }
+
+    /**
+     * Copies the buckets of another counter into this one.
+     *
+     * @param other the other counter.
+     */
+    void copy(UsageCounter other) {
+        long[][] otherCounts = new long[WINDOWS.length][];
+        long[][] otherStamps = new long[WINDOWS.length][];
+        synchronized (other) {
+            for (int i = 0; i < WINDOWS.length; i++) {
+                otherCounts[i] = other.counts[i].clone();
+                otherStamps[i] = other.stamps[i].clone();
+            }
+        }
+        synchronized (this) {
+            for (int i = 0; i < WINDOWS.length; i++) {
+                System.arraycopy(otherCounts[i], 0, counts[i], 0, counts[i].length);
+                System.arraycopy(otherStamps[i], 0, stamps[i], 0, stamps[i].length);
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package core;
+
+import java.util.*;
+import java.util.function.ToLongFunction;
+
+/**
+ * Ranks elements by decreasing usage, kept up to date incrementally. The ranking keeps the usage of each element as
+ * of its last update in a balanced tree, so an update costs O(log n) and never reorders the collection the elements
+ * came from. Elements of equal usage keep the order they were added in.
+ * <p>
+ * Readers get an immutable snapshot of the ranking, built once per change and shared until the next one.
+ *
+ * @param <T> the type of the elements.
+ */
+final class UsageRanking<T> {
+    /**
+     * An element, with its usage as of its last update.
+     *
+     * @param <T> the type of the element.
+     */
+    private static final class Entry<T> {
+        private final T element; // The element
+        private final long order; // The order the element was added in, to break ties
+        private long usage; // The usage of the element as of its last update
+
+        /**
+         * Creates an Entry.
+         *
+         * @param element the element.
+         * @param order   the order the element was added in.
+         * @param usage   the usage of the element.
+         */
+        private Entry(T element, long order, long usage) {
+            this.element = element;
+            this.order = order;
+            this.usage = usage;
+        }
+    }
+
+    private final ToLongFunction<T> usage; // Returns the current usage of an element
+    private final IdentityHashMap<T, Entry<T>> entries = new IdentityHashMap<>(); // The entry of each element
+    private final TreeSet<Entry<T>> ranked = new TreeSet<>((a, b) -> a.usage != b.usage
+            ? Long.compare(b.usage, a.usage) : Long.compare(a.order, b.order)); // The entries, by decreasing usage
+    private long added = 0; // The number of elements ever added
+    private volatile List<T> snapshot; // The ranking as of the last change, or null if it must be rebuilt
+
+    /**
+     * Creates a UsageRanking of some elements.
+     *
+     * @param elements the elements, in the order that breaks ties.
+     * @param usage    returns the current usage of an element.
+     */
+    UsageRanking(Collection<? extends T> elements, ToLongFunction<T> usage) {
+        this.usage = usage;
+        rebuild(elements);
+    }
+
+    /**
+     * Re-ranks an element after its usage changed, adding it if it is new.
+     *
+     * @param element the element.
+     */
+    synchronized void update(T element) {
+        long current = usage.applyAsLong(element);
+        Entry<T> entry = entries.get(element);
+        if (entry == null) {
+            entry = new Entry<>(element, added++, current);
+            entries.put(element, entry);
+        } else if (entry.usage == current) {
+            return;
+        } else {
+            ranked.remove(entry);
+            entry.usage = current;
+        }
+        ranked.add(entry);
+        snapshot = null;
+    }
+
+    /**
+     * Replaces the ranked elements, reading the usage of each.
+     *
+     * @param elements the elements, in the order that breaks ties.
+     */
+    synchronized void rebuild(Collection<? extends T> elements) {
+        entries.clear();
+        ranked.clear();
+        added = 0;
+        for (T element : elements) {
+            update(element);
+        }
+        snapshot = null;
+    }
+
+    /**
+     * Returns the ranked elements.
+     *
+     * @return an immutable list of the elements, by decreasing usage.
+     */
+    List<T> getRanking() {
+        List<T> ranking = snapshot;
+        if (ranking != null) {
+            return ranking;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                ArrayList<T> elements = new ArrayList<>(ranked.size());
+                for (Entry<T> entry : ranked) {
+                    elements.add(entry.element);
+                }
+                snapshot = Collections.unmodifiableList(elements);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Returns the k most used elements.
+     *
+     * @param k the number of elements.
+     * @return an immutable list of at most k elements, by decreasing usage.
+     */
+    List<T> top(int k) {
+        List<T> ranking = snapshot;
+        if (ranking != null) {
+            return ranking.subList(0, Math.min(k, ranking.size()));
+        }
+        synchronized (this) {
+            ArrayList<T> elements = new ArrayList<>(Math.min(k, ranked.size()));
+            Iterator<Entry<T>> iterator = ranked.iterator();
+            while (elements.size() < k && iterator.hasNext()) {
+                elements.add(iterator.next().element);
+            }
+            return Collections.unmodifiableList(elements);
+        }
+    }
+}
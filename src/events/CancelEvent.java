@@ -77,8 +77,12 @@ public class CancelEvent extends Event {
      */
     @Override
     public void execute() {
-        boolean isDelivered = order.isDelivered();
-        order.setProgress(Order.ORDER_CANCELLED);
+        int previous = order.cancel();
+        if (previous < 0) {
+            order.getServer().log(String.format("Order %s was already cancelled", order));
+            return;
+        }
+        boolean isDelivered = previous == Order.ORDER_DELIVERED;
         Cook cook = order.getCook();
 
         order.getServer().log(String.format("Order %s cancelled: %s", order, getReason()));
@@ -103,8 +107,6 @@ public class CancelEvent extends Event {
             table.removeOrder(order);
         }
 
-        order.setProgress(Order.ORDER_CANCELLED);
-
         restaurant.getAllEmployees("Manager").forEach(employee -> ((Manager) employee).refreshOrders());
         restaurant.getAllEmployees("Server").forEach(employee -> {
             Server server = ((Server) employee);
@@ -112,7 +114,8 @@ public class CancelEvent extends Event {
             server.refreshView();
         });
 
-        Cook.unassign(order);
+        restaurant.getStationRouter().cancel(order);
+        restaurant.getJournal().cancelled(order);
 
         refresh();
     }
@@ -2,7 +2,6 @@ package events;
 
 import core.Restaurant;
 import core.Table;
-import util.PaymentJsonWriter;
 import visual.gui.Server;
 
 /**
@@ -31,7 +30,9 @@ public class ClearTableEvent extends Event {
     @Override
     public void execute() {
         server.log(String.format("Cleared %s and received payment", table));
-        PaymentJsonWriter.PaymentWriter(table);
+        restaurant.getPaymentLedger().record(table.getServer().toString(), table.getTableNumber(),
+                table.getTotalBillAmount());
+        restaurant.getOrderStore().close(table);
         this.table.clearOrders();
     }
 
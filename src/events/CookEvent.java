@@ -74,7 +74,12 @@ public class CookEvent extends Event {
             return;
         }
 
-        this.order.setProgress(Order.ORDER_COOKED);
+        if (!this.order.advance(Order.ORDER_COOKED)) {
+            cook.log(String.format("Order %s was already cooked or cancelled, cannot complete cooking", order));
+            this.restaurant.checkThresholds();
+            refresh();
+            return;
+        }
         this.restaurant.updateInventory(order);
         this.restaurant.checkThresholds();
 
@@ -34,14 +34,18 @@ public class DeliverEvent extends Event {
     public void execute() {
         if (!order.isCooked()) {
             System.err.println("Order needs to be cooked before delivered");
-            System.exit(1);
+            return;
         }
         if (this.order.getProgress() == Order.ORDER_CANCELLED) {
             System.err.println(String.format("Order %s was cancelled, cannot complete event", order));
             return;
         }
 
-        order.setProgress(Order.ORDER_DELIVERED);
+        if (!order.advance(Order.ORDER_DELIVERED)) {
+            System.err.println(String.format("Order %s was already delivered or cancelled", order));
+            return;
+        }
+        restaurant.getJournal().delivered(order);
         Log.logID(server, server.getId(), String.format("Order %s delivered to Table (%d)", order,
                 order.getTable().getTableNumber()));
 
@@ -5,6 +5,7 @@ import core.Order;
 import core.Restaurant;
 import core.Table;
 import util.Log;
+import util.Money;
 
 /**
  * Represents an event where a table requests its bill.
@@ -12,8 +13,8 @@ import util.Log;
 public class GetBillEvent extends Event {
     private Table table; // The bill for the table
     private int seat; // The bill for the seat (optional)
-    public static final double TAX_AMOUNT = 0.13; //The amount of Tax to be added
-    public static final double AUTOMATIC_TIP_AMOUNT = 0.15; //The automatic gratuity to be added for tables >= 8.
+    public static final int TAX_BASIS_POINTS = 1300; //The amount of Tax to be added, in basis points
+    public static final int AUTOMATIC_TIP_BASIS_POINTS = 1500; //The automatic gratuity to be added for tables >= 8.
     private JFXTextArea update; //the text area to update in the GUI
 
     /**
@@ -36,7 +37,7 @@ public class GetBillEvent extends Event {
      */
     @Override
     public void execute() {
-        double finalPrice = 0d;
+        long finalPrice = 0;
 
         StringBuilder sb = new StringBuilder("Table Number: " + table.getTableNumber());
         sb.append(System.lineSeparator());
@@ -46,7 +47,7 @@ public class GetBillEvent extends Event {
                 if(!order.isDelivered())
                     continue;
 
-                sb.append(formatBill(order));
+                formatBill(sb, order);
             }
 
             finalPrice = table.getBasePrice();
@@ -55,25 +56,24 @@ public class GetBillEvent extends Event {
             sb.append("Seat Number: ").append(seat);
             sb.append(System.lineSeparator());
 
-            for (Order order : table.getOrders()) {
+            for (Order order : table.getOrders(seat)) {
                 if(!order.isDelivered())
                     continue;
 
-                if (order.getSeatNumber() == seat) {
-                    sb.append(formatBill(order));
-                    finalPrice += order.getPrice();
-                }
+                formatBill(sb, order);
             }
+
+            finalPrice = table.getBasePrice(seat);
         }
 
-        double taxAmount = table.getTaxAmount(finalPrice);
-        double tipAmount = table.getTipAmount(finalPrice);
+        long taxAmount = table.getTaxAmount(finalPrice);
+        long tipAmount = table.getTipAmount(finalPrice);
 
         sb.append(System.lineSeparator());
-        sb.append("Subtotal:    ").append(String.format("$%.2f", finalPrice)).append(System.lineSeparator());
-        sb.append("Tax (HST):   ").append(String.format("$%.2f", taxAmount)).append(System.lineSeparator());
-        sb.append("Tip:         ").append(String.format("$%.2f", tipAmount)).append(System.lineSeparator());
-        sb.append("Total:       ").append(String.format("$%.2f", finalPrice + taxAmount + tipAmount)).append(System.lineSeparator());
+        Money.append(sb.append("Subtotal:    "), finalPrice).append(System.lineSeparator());
+        Money.append(sb.append("Tax (HST):   "), taxAmount).append(System.lineSeparator());
+        Money.append(sb.append("Tip:         "), tipAmount).append(System.lineSeparator());
+        Money.append(sb.append("Total:       "), finalPrice + taxAmount + tipAmount).append(System.lineSeparator());
 
         Log.log(table, "bill has printed.");
 
@@ -87,24 +87,22 @@ public class GetBillEvent extends Event {
     /**
      * Formats a bill for a specific order (used in both table and seat bills).
      *
+     * @param sb    the bill to append the order's portion to.
      * @param order the order to format a bill for.
-     * @return a string, representing a portion of a bill for the specific order.
      */
-    private String formatBill(Order order) {
+    private void formatBill(StringBuilder sb, Order order) {
         if (order == null) {
-            return "";
+            return;
         }
 
-        StringBuilder sb = new StringBuilder(System.lineSeparator());
+        sb.append(System.lineSeparator());
         sb.append("Order ===========");
         sb.append(System.lineSeparator());
         sb.append("\t");
         sb.append(order);
         sb.append(System.lineSeparator());
         sb.append("\t\tPrice: ");
-        sb.append(String.format("$%.2f", order.getPrice()));
-
-        return sb.toString();
+        Money.append(sb, order.getPrice());
     }
 
 
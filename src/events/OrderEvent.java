@@ -15,6 +15,7 @@ import java.util.ArrayList;
 public class OrderEvent extends Event {
     private final Order order; //an order
     private final Server server; // The server who took the order
+    private boolean placed = false; // If the order was placed, i.e. its ingredients could be reserved
 
     /**
      * Creates an OrderEvent
@@ -38,16 +39,36 @@ public class OrderEvent extends Event {
         return order;
     }
 
+    /**
+     * Returns if the order was placed when this event was executed.
+     *
+     * @return true if the order was placed, false if its ingredients could not be reserved.
+     */
+    public boolean isPlaced() {
+        return placed;
+    }
+
     /**
      * Executes an OrderEvent.
      */
     @Override
     public void execute() {
+        if (!this.restaurant.getIngredientManager().reserve(this.order)) {
+            Log.logID(server, server.getId(), String.format("Order %s could not be placed: out of ingredients",
+                    order));
+            return;
+        }
+
         restaurant.sendOrder(order);
-        order.setProgress(Order.ORDER_ORDERED);
         restaurant.addOrder(order);
-
-        this.restaurant.getIngredientManager().reserve(this.order);
+        restaurant.getJournal().lock();
+        try {
+            restaurant.getStatistics().update(order);
+            restaurant.getJournal().orderPlaced(order);
+        } finally {
+            restaurant.getJournal().unlock();
+        }
+        placed = true;
 
         Log.logID(server, server.getId(), String.format("Order %s ordered for Table %d", order,
                 order.getTable().getTableNumber()));
@@ -52,27 +52,30 @@ public class ReceiveEvent extends Event {
      */
     @Override
     public void execute() {
-
-        ArrayList<Employee> employees = restaurant.getAllEmployees("Cook");
-        cook.setAvailable(false);
-        employees.forEach(employee -> {
-            ((Cook) employee).refreshAssigned();
-            ((Cook) employee).refreshView();
-        });
-
-
         if (this.order.getProgress() == Order.ORDER_CANCELLED) {
             cook.logf("Order %s was cancelled, cannot complete event\n", order);
             return;
         }
 
         if (this.cook.getId() != order.getCook().getId()) {
-            System.err.printf("Cook %d could not receive order %d, Reason: order was dispatched to cook %d\n",
+            cook.logf("Cook %d could not receive order %d, Reason: order was dispatched to cook %d\n",
                     this.cook.getId(), order.getOrderNumber(), order.getCook().getId());
-            System.exit(1);
+            return;
         }
 
-        this.order.setProgress(Order.ORDER_RECEIVED);
+        if (!this.order.advance(Order.ORDER_RECEIVED)) {
+            cook.logf("Order %s was already received or cancelled, cannot complete event\n", order);
+            return;
+        }
+
+        // The cook is only busy once the order is theirs
+        ArrayList<Employee> employees = restaurant.getAllEmployees("Cook");
+        cook.setAvailable(false);
+        employees.forEach(employee -> {
+            ((Cook) employee).refreshAssigned();
+            ((Cook) employee).refreshView();
+        });
+
         Log.logID(cook, cook.getId(), String.format("Order %s received and ready to cook", order));
         ArrayList<Employee> managers = restaurant.getAllEmployees("Manager");
         managers.forEach(manager -> ((Manager) manager).refreshView());
@@ -37,14 +37,19 @@ public class ShipmentEvent extends Event {
         this.ingredients.forEach((k, v) -> {
             ArrayList<Employee> employees = restaurant.getAllEmployees();
 
-            k.addAmount(v);
+            restaurant.getJournal().lock();
+            try {
+                k.addAmount(v);
+                restaurant.getJournal().shipment(k, v);
+            } finally {
+                restaurant.getJournal().unlock();
+            }
             Log.log(employee, String.format("Shipment (%s - %d) received by %s", k.toString(), v, employee.toString()));
             employees.forEach(employee -> {
                 if (employee instanceof Manager) {
                     Manager manager = (Manager) employee;
                     manager.addArrival(k, v);
                     manager.updateInventory();
-                    restaurant.getIngredientManager().backup();
 
                 }
             });
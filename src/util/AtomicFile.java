@@ -0,0 +1,65 @@
+package util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Replaces files atomically: the new contents are written to a temporary file beside the target, forced to disk and
+ * renamed over the target, so a crash leaves either the old or the new contents, never a mix.
+ */
+public final class AtomicFile {
+    /**
+     * AtomicFile is only a set of static helpers.
+     */
+    private AtomicFile() {
+    }
+
+    /**
+     * Returns the temporary file to write the new contents of a file to.
+     *
+     * @param file the file to replace.
+     * @return the temporary file.
+     */
+    public static File temp(File file) {
+        return new File(file.getPath() + ".tmp");
+    }
+
+    /**
+     * Replaces the contents of a file with text.
+     *
+     * @param file the file to replace.
+     * @param text the new contents.
+     * @throws IOException if the file cannot be replaced.
+     */
+    public static void write(File file, String text) throws IOException {
+        File temp = temp(file);
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+        commit(temp, file);
+    }
+
+    /**
+     * Renames a temporary file, already written and forced to disk, over the file it replaces.
+     *
+     * @param temp the temporary file.
+     * @param file the file to replace.
+     * @throws IOException if the file cannot be replaced.
+     */
+    public static void commit(File temp, File file) throws IOException {
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        try (FileChannel directory = FileChannel.open(file.getAbsoluteFile().getParentFile().toPath(),
+                StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException ignored) {
+            // not every platform can sync a directory; the rename is still atomic
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package util;
+
+import visual.Login;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out unique ids that survive restarts. Each thread takes ids from a block of its own, so taking an id is a
+ * thread-local increment; blocks are claimed from a shared counter with a single atomic add. Before any id of a
+ * block is handed out, a high-water mark past the block is written to a file, so after a restart, or a crash, ids
+ * start above every id handed out before. The mark is moved a lease of several blocks at a time, so the file is
+ * written once per lease rather than once per block.
+ * <p>
+ * Ids increase on each thread, and from one run to the next, but ids taken on different threads interleave.
+ */
+public class IdGenerator {
+    private static final int LEASE_BLOCKS = 16; // The number of blocks the high-water mark is moved by at a time
+
+    private final File file; // The file of the high-water mark
+    private final int blockSize; // The number of ids in a block
+    private final AtomicLong blocks; // The first id of the next block to claim
+    private volatile long durable; // The high-water mark in the file: no id at or above it was handed out
+    private final ThreadLocal<long[]> block = ThreadLocal.withInitial(() -> new long[2]); // Next and end of a block
+
+    /**
+     * Creates an IdGenerator, reading its high-water mark.
+     *
+     * @param file      the file of the high-water mark.
+     * @param first     the first id, when the file does not exist.
+     * @param blockSize the number of ids a thread claims at a time.
+     */
+    public IdGenerator(File file, long first, int blockSize) {
+        this.file = file;
+        this.blockSize = blockSize;
+        long mark = first;
+        if (file.exists()) {
+            try {
+                mark = Math.max(first, Long.parseLong(new String(Files.readAllBytes(file.toPath()),
+                        StandardCharsets.UTF_8).trim()));
+            } catch (IOException | NumberFormatException e) {
+                Login.logger.warning("Unable to read id high-water mark " + file + ": " + e.getMessage());
+            }
+        }
+        this.blocks = new AtomicLong(mark);
+        this.durable = mark;
+    }
+
+    /**
+     * Returns a new id.
+     *
+     * @return the id.
+     */
+    public long next() {
+        long[] current = block.get();
+        if (current[0] == current[1]) {
+            long start = blocks.getAndAdd(blockSize);
+            reserve(start + blockSize);
+            current[0] = start;
+            current[1] = start + blockSize;
+        }
+        return current[0]++;
+    }
+
+    /**
+     * Returns a new id that fits in an int.
+     *
+     * @return the id.
+     * @throws ArithmeticException if the ids are exhausted.
+     */
+    public int nextInt() {
+        return Math.toIntExact(next());
+    }
+
+    /**
+     * Moves the high-water mark past an id, if it is not already.
+     *
+     * @param end the id after the last one to be handed out.
+     */
+    private void reserve(long end) {
+        if (end <= durable) {
+            return;
+        }
+        synchronized (this) {
+            if (end <= durable) {
+                return;
+            }
+            long mark = Math.max(end, blocks.get()) + (long) LEASE_BLOCKS * blockSize;
+            try {
+                AtomicFile.write(file, Long.toString(mark));
+            } catch (IOException e) {
+                Login.logger.warning("Unable to write id high-water mark " + file + ", ids may repeat after a "
+                        + "restart: " + e.getMessage());
+            }
+            durable = mark;
+        }
+    }
+}
@@ -0,0 +1,552 @@
+package util;
+
+import visual.Login;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only binary journal with group commit. Records appended by any number of threads are queued and
+ * written by a single writer thread, which writes everything queued since its last write in one sequential write
+ * and, depending on the FsyncPolicy, forces it to disk once for the whole group.
+ * <p>
+ * Every record has a sequence number, starting at 1. The journal is kept in segment files in a directory, each
+ * named after the sequence number it starts at, so that records covered by a snapshot can be discarded by deleting
+ * whole segments: see roll and discard.
+ * <p>
+ * Each record is laid out as: length (int), sequence number (long), type (byte), timestamp (long), payload,
+ * CRC32 (int), where the length and the checksum cover everything between them. A torn or corrupt record ends the
+ * journal on replay.
+ * <p>
+ * The writer thread writes and forces outside the lock appenders take, so appending never waits behind the disk
+ * unless the FsyncPolicy asks it to. If the writer fails, the journal stops accepting records: append throws the
+ * error, so callers can fall back to another way of persisting their changes.
+ */
+public class Journal implements Closeable {
+    /**
+     * When the journal forces its writes to disk.
+     */
+    public enum FsyncPolicy {
+        /**
+         * Every group commit is forced to disk before the appenders in it return.
+         */
+        ALWAYS,
+        /**
+         * Writes are forced to disk at most once per interval; appenders do not wait.
+         */
+        INTERVAL,
+        /**
+         * Writes are left to the operating system to flush; appenders do not wait.
+         */
+        NEVER
+    }
+
+    /**
+     * Receives the records of a journal when it is replayed.
+     */
+    public interface Handler {
+        /**
+         * Called for each record, in the order the records were appended.
+         *
+         * @param type      the type of the record.
+         * @param timestamp the time the record was appended, in milliseconds.
+         * @param payload   the payload of the record.
+         * @throws IOException if the payload is malformed.
+         */
+        void record(byte type, long timestamp, DataInputStream payload) throws IOException;
+    }
+
+    private static final String SUFFIX = ".journal"; // The extension of segment files
+    private static final int HEADER = 4 + 8 + 1 + 8; // length, sequence number, type and timestamp
+    private static final int TRAILER = 4; // checksum
+
+    private final File directory; // The directory of segment files
+    private final FsyncPolicy policy; // When writes are forced to disk
+    private final long intervalMillis; // The interval between forced writes, for FsyncPolicy.INTERVAL
+
+    private final Object io = new Object(); // Guards the channel; never held while waiting for the lock
+    private FileChannel channel; // The channel of the segment being appended to
+
+    private final Object lock = new Object(); // Guards the fields below
+    private File segment; // The segment being appended to, or null until the journal is replayed
+    private ArrayList<byte[]> pending = new ArrayList<>(); // Encoded records waiting to be written
+    private long appended = 0; // The sequence number of the last appended record
+    private long written = 0; // The sequence number of the last written record
+    private long durable = 0; // The sequence number of the last record forced to disk
+    private long lastSync = 0; // The time of the last forced write, in milliseconds
+    private boolean syncRequested = false; // If a thread is waiting for written records to be forced to disk
+    private IOException failure; // The error that stopped the writer, if any
+    private boolean closed = false; // If the journal was closed
+
+    private long records = 0; // Number of records written
+    private long batches = 0; // Number of group commits
+    private long bytes = 0; // Number of bytes written
+    private long syncs = 0; // Number of forced writes
+
+    private final Thread writer; // The writer thread
+
+    /**
+     * Opens a journal, creating its directory if it does not exist. The journal must be replayed before records
+     * can be appended.
+     *
+     * @param directory      the directory of segment files.
+     * @param policy         when writes are forced to disk.
+     * @param intervalMillis the interval between forced writes, for FsyncPolicy.INTERVAL.
+     * @throws IOException if the directory cannot be created.
+     */
+    public Journal(File directory, FsyncPolicy policy, long intervalMillis) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create journal directory " + directory);
+        }
+        this.directory = directory;
+        this.policy = policy;
+        this.intervalMillis = intervalMillis;
+
+        this.writer = new Thread(this::run, "journal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Replays the intact records of the journal after a sequence number, in order, and opens the journal for
+     * appending after the last intact record. A torn record at the end of the last segment, left by a crash, is
+     * truncated; a corrupt record in an earlier segment ends the journal, and the segments after it are set aside.
+     *
+     * @param after   the sequence number of the last record already applied, e.g. by a snapshot; 0 for none.
+     * @param handler the handler to pass the records to.
+     * @return the number of records replayed.
+     * @throws IOException if the journal cannot be read.
+     */
+    public int replay(long after, Handler handler) throws IOException {
+        synchronized (lock) {
+            if (segment != null) {
+                throw new IllegalStateException("Journal was already replayed");
+            }
+
+            File[] segments = segments();
+            long last = 0;
+            int count = 0;
+            for (int i = 0; i < segments.length; i++) {
+                try (FileChannel in = FileChannel.open(segments[i].toPath(), StandardOpenOption.READ,
+                        StandardOpenOption.WRITE)) {
+                    long position = 0, size = in.size();
+                    ByteBuffer header = ByteBuffer.allocate(4);
+                    CRC32 crc = new CRC32();
+
+                    while (position + 4 <= size) {
+                        header.clear();
+                        in.read(header, position);
+                        int length = header.getInt(0);
+                        if (length < HEADER - 4 || position + 4 + length + TRAILER > size) {
+                            break;
+                        }
+
+                        ByteBuffer body = ByteBuffer.allocate(length + TRAILER);
+                        in.read(body, position + 4);
+                        crc.reset();
+                        crc.update(body.array(), 0, length);
+                        long sequence = body.getLong(0);
+                        if ((int) crc.getValue() != body.getInt(length) || sequence <= last) {
+                            break;
+                        }
+
+                        if (sequence > after) {
+                            handler.record(body.get(8), body.getLong(9), new DataInputStream(
+                                    new ByteArrayInputStream(body.array(), HEADER - 4, length - (HEADER - 4))));
+                            count++;
+                        }
+                        last = sequence;
+                        position += 4 + length + TRAILER;
+                    }
+
+                    if (position < size) {
+                        Login.logger.warning("Discarding " + (size - position) + " bytes of torn or corrupt journal "
+                                + segments[i]);
+                        in.truncate(position);
+                        in.force(true);
+                        for (int j = i + 1; j < segments.length; j++) {
+                            setAside(segments[j]);
+                        }
+                        segments = Arrays.copyOf(segments, i + 1);
+                    }
+                }
+            }
+
+            appended = written = durable = Math.max(last, after);
+            if (segments.length > 0) {
+                open(segments[segments.length - 1]);
+            } else {
+                open(segmentFile(appended + 1));
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Appends a record. Depending on the FsyncPolicy, waits until the record is on disk.
+     *
+     * @param type    the type of the record.
+     * @param payload the payload of the record.
+     * @return the sequence number of the record.
+     * @throws IOException if the writer failed, now or before, so the record will never be written.
+     */
+    public long append(byte type, byte[] payload) throws IOException {
+        int length = HEADER - 4 + payload.length;
+        ByteBuffer record = ByteBuffer.allocate(4 + length + TRAILER);
+        record.putInt(length).putLong(0).put(type).putLong(System.currentTimeMillis()).put(payload);
+
+        long sequence;
+        synchronized (lock) {
+            if (segment == null) {
+                throw new IllegalStateException("Journal must be replayed before appending");
+            }
+            if (closed) {
+                throw new IllegalStateException("Journal is closed");
+            }
+            if (failure != null) {
+                throw new IOException("Journal writer failed", failure);
+            }
+            sequence = ++appended;
+            record.putLong(4, sequence);
+
+            CRC32 crc = new CRC32();
+            crc.update(record.array(), 4, length);
+            record.putInt((int) crc.getValue());
+
+            pending.add(record.array());
+            lock.notifyAll();
+        }
+
+        if (policy == FsyncPolicy.ALWAYS) {
+            await(sequence, true);
+        }
+        return sequence;
+    }
+
+    /**
+     * Starts a new segment for the records appended from now on. Waits for pending records to be written first, and
+     * forces them to disk. If the writer failed, the segment is kept, as no more records will be written.
+     *
+     * @return the sequence number of the last record before the new segment.
+     * @throws IOException if the new segment cannot be created.
+     */
+    public long roll() throws IOException {
+        synchronized (lock) {
+            if (segment == null) {
+                throw new IllegalStateException("Journal must be replayed before rolling");
+            }
+            while ((!pending.isEmpty() || written < appended) && failure == null) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while rolling the journal");
+                }
+            }
+            if (failure != null) {
+                return appended;
+            }
+
+            synchronized (io) {
+                if (durable < written) {
+                    channel.force(false);
+                    durable = written;
+                    syncs++;
+                }
+                channel.close();
+                open(segmentFile(appended + 1));
+            }
+            lock.notifyAll();
+            return appended;
+        }
+    }
+
+    /**
+     * Deletes the segments whose records all have a sequence number up to a given one, e.g. once a snapshot covers
+     * them. The segment being appended to is never deleted.
+     *
+     * @param upTo the sequence number of the last record that can be discarded.
+     */
+    public void discard(long upTo) {
+        synchronized (lock) {
+            File[] segments = segments();
+            for (int i = 0; i + 1 < segments.length; i++) {
+                if (segments[i].equals(segment) || firstSequence(segments[i + 1]) - 1 > upTo) {
+                    break;
+                }
+                if (!segments[i].delete()) {
+                    Login.logger.warning("Unable to delete journal segment " + segments[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits until every record appended so far is written and forced to disk.
+     *
+     * @throws IOException if the writer failed before the records were forced to disk.
+     */
+    public void sync() throws IOException {
+        long sequence;
+        synchronized (lock) {
+            sequence = appended;
+        }
+        await(sequence, true);
+    }
+
+    /**
+     * Waits until a record is written, or forced to disk.
+     *
+     * @param sequence the sequence number of the record.
+     * @param force    true to wait until the record is forced to disk.
+     * @throws IOException if the writer failed before the record was written, or forced to disk.
+     */
+    private void await(long sequence, boolean force) throws IOException {
+        synchronized (lock) {
+            if (force && durable < sequence) {
+                syncRequested = true;
+                lock.notifyAll();
+            }
+            while ((force ? durable : written) < sequence && failure == null) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the journal");
+                }
+            }
+            if ((force ? durable : written) < sequence) {
+                throw new IOException("Journal writer failed", failure);
+            }
+        }
+    }
+
+    /**
+     * Writes queued records in groups until the journal is closed.
+     */
+    private void run() {
+        while (true) {
+            ArrayList<byte[]> batch;
+            long last;
+            boolean force;
+            synchronized (lock) {
+                while (pending.isEmpty() && !closed && !syncDue()) {
+                    long wait = policy == FsyncPolicy.INTERVAL && durable < written
+                            ? Math.max(1, lastSync + intervalMillis - System.currentTimeMillis()) : 0;
+                    try {
+                        lock.wait(wait);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.isEmpty() && closed && !syncDue()) {
+                    return;
+                }
+
+                batch = pending;
+                pending = new ArrayList<>();
+                last = appended;
+                force = policy == FsyncPolicy.ALWAYS || closed || syncDue() || (policy == FsyncPolicy.INTERVAL
+                        && System.currentTimeMillis() - lastSync >= intervalMillis);
+                if (force) {
+                    lastSync = System.currentTimeMillis();
+                    syncRequested = false;
+                }
+            }
+
+            try {
+                int size = 0;
+                for (byte[] record : batch) {
+                    size += record.length;
+                }
+                ByteBuffer buffer = ByteBuffer.allocate(size);
+                for (byte[] record : batch) {
+                    buffer.put(record);
+                }
+                buffer.flip();
+
+                synchronized (io) {
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    if (force) {
+                        channel.force(false);
+                    }
+                }
+
+                synchronized (lock) {
+                    written = last;
+                    durable = force ? last : durable;
+                    records += batch.size();
+                    batches++;
+                    bytes += size;
+                    syncs += force ? 1 : 0;
+                    lock.notifyAll();
+                }
+            } catch (IOException e) {
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+                Login.logger.warning("Unable to write journal " + segment + ": " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns if written records should be forced to disk now, without waiting for more records. Must hold the lock.
+     *
+     * @return true if a sync was requested, or the interval has passed since written records were last forced.
+     */
+    private boolean syncDue() {
+        return durable < written && (syncRequested || (policy == FsyncPolicy.INTERVAL
+                && System.currentTimeMillis() - lastSync >= intervalMillis));
+    }
+
+    /**
+     * Opens a segment for appending. Must hold the lock, and the channel's lock if the journal was replayed.
+     *
+     * @param file the segment file.
+     * @throws IOException if the segment cannot be opened.
+     */
+    private void open(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        segment = file;
+    }
+
+    /**
+     * Returns the segment files of the journal, in order.
+     *
+     * @return the segment files.
+     */
+    private File[] segments() {
+        File[] segments = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (segments == null) {
+            return new File[0];
+        }
+        Arrays.sort(segments);
+        return segments;
+    }
+
+    /**
+     * Returns the file of a segment starting at a sequence number.
+     *
+     * @param first the sequence number of the segment's first record.
+     * @return the segment file.
+     */
+    private File segmentFile(long first) {
+        return new File(directory, String.format("%020d%s", first, SUFFIX));
+    }
+
+    /**
+     * Returns the sequence number a segment starts at.
+     *
+     * @param segment the segment file.
+     * @return the sequence number of its first record.
+     */
+    private static long firstSequence(File segment) {
+        String name = segment.getName();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * Renames a segment that can no longer be replayed, so it is kept for inspection but ignored.
+     *
+     * @param segment the segment file.
+     */
+    private static void setAside(File segment) {
+        File corrupt = new File(segment.getPath() + ".corrupt");
+        if (!segment.renameTo(corrupt)) {
+            Login.logger.warning("Unable to set aside journal segment " + segment);
+        }
+    }
+
+    /**
+     * Returns the sequence number of the last appended record.
+     *
+     * @return the sequence number, or 0 if no record was ever appended.
+     */
+    public long getLastSequence() {
+        synchronized (lock) {
+            return appended;
+        }
+    }
+
+    /**
+     * Returns the number of records written.
+     *
+     * @return the number of records.
+     */
+    public long getRecords() {
+        synchronized (lock) {
+            return records;
+        }
+    }
+
+    /**
+     * Returns the number of group commits, i.e. sequential writes, performed.
+     *
+     * @return the number of group commits.
+     */
+    public long getBatches() {
+        synchronized (lock) {
+            return batches;
+        }
+    }
+
+    /**
+     * Returns the number of bytes written.
+     *
+     * @return the number of bytes.
+     */
+    public long getBytes() {
+        synchronized (lock) {
+            return bytes;
+        }
+    }
+
+    /**
+     * Returns the number of times writes were forced to disk.
+     *
+     * @return the number of forced writes.
+     */
+    public long getSyncs() {
+        synchronized (lock) {
+            return syncs;
+        }
+    }
+
+    /**
+     * Writes and forces every pending record, then closes the journal.
+     *
+     * @throws IOException if the segment cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (io) {
+            if (channel != null) {
+                channel.force(true);
+                channel.close();
+            }
+        }
+    }
+}
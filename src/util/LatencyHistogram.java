@@ -0,0 +1,235 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lock-free histogram of latencies over a sliding window, for percentiles such as p50, p95 and p99.
+ * <p>
+ * Latencies are counted in log-linear buckets, as in an HDR histogram: each power of two is split into SUB_BUCKETS
+ * equal buckets, so a percentile is exact to within 1/SUB_BUCKETS of its value whatever its magnitude, and memory is
+ * bounded by the number of powers of two covered. Time is split into slots of a fixed length, each with its own
+ * buckets, kept in a ring; a query merges the slots of the window asked for. A slot's buckets are allocated the
+ * first time a latency is recorded in it and dropped when the ring comes back around, so an idle histogram holds
+ * no buckets. Recording is a single atomic increment, except for the first record of each slot.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 3; // log2 of the number of buckets per power of two
+    private static final int SUB_BUCKETS = 1 << SUB_BITS; // The number of buckets per power of two
+    private static final int MAX_EXPONENT = 40; // Latencies of 2^41 or more are counted in the last bucket
+    private static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BITS + 1) * SUB_BUCKETS; // Bucket count
+
+    /**
+     * The buckets of one slot of time.
+     */
+    private static final class Slot {
+        private final long epoch; // The index of the slot's time since the epoch, in slot lengths
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS); // The count of each bucket
+
+        /**
+         * Creates a Slot.
+         *
+         * @param epoch the index of the slot's time since the epoch, in slot lengths.
+         */
+        private Slot(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+
+    private final long slotMillis; // The length of a slot, in milliseconds
+    private final AtomicReferenceArray<Slot> slots; // The ring of slots
+
+    /**
+     * Creates a LatencyHistogram.
+     *
+     * @param slotMillis the length of a slot, i.e. the granularity of windows, in milliseconds.
+     * @param slots      the number of slots kept, i.e. the longest window in slots.
+     */
+    public LatencyHistogram(long slotMillis, int slots) {
+        this.slotMillis = slotMillis;
+        this.slots = new AtomicReferenceArray<>(slots);
+    }
+
+    /**
+     * Records a latency now.
+     *
+     * @param latency the latency, in any unit; negative latencies are ignored.
+     */
+    public void record(long latency) {
+        record(latency, System.currentTimeMillis());
+    }
+
+    /**
+     * Records a latency at a time.
+     *
+     * @param latency the latency, in any unit; negative latencies are ignored.
+     * @param time    the time, in milliseconds.
+     */
+    public void record(long latency, long time) {
+        if (latency < 0) {
+            return;
+        }
+        long epoch = time / slotMillis;
+        int index = (int) (epoch % slots.length());
+        Slot slot = slots.get(index);
+        while (slot == null || slot.epoch < epoch) {
+            Slot fresh = new Slot(epoch);
+            if (slots.compareAndSet(index, slot, fresh)) {
+                slot = fresh;
+            } else {
+                slot = slots.get(index);
+            }
+        }
+        if (slot.epoch == epoch) {
+            slot.counts.incrementAndGet(bucket(latency));
+        }
+    }
+
+    /**
+     * Returns the bucket counting a latency.
+     *
+     * @param latency the latency, at least 0.
+     * @return the index of the bucket.
+     */
+    private static int bucket(long latency) {
+        if (latency < SUB_BUCKETS) {
+            return (int) latency;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(latency);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (latency >>> (exponent - SUB_BITS)) - SUB_BUCKETS;
+        return SUB_BUCKETS + (exponent - SUB_BITS) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Returns the value a bucket stands for: the middle of the latencies it counts.
+     *
+     * @param bucket the index of the bucket.
+     * @return the latency.
+     */
+    private static long value(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        long lowest = (long) (SUB_BUCKETS + (bucket - SUB_BUCKETS) % SUB_BUCKETS) << shift;
+        return lowest + ((1L << shift) >>> 1);
+    }
+
+    /**
+     * Returns the longest window that can be queried.
+     *
+     * @return the number of slots kept.
+     */
+    public int getSlots() {
+        return slots.length();
+    }
+
+    /**
+     * Returns the length of a slot.
+     *
+     * @return the length, in milliseconds.
+     */
+    public long getSlotMillis() {
+        return slotMillis;
+    }
+
+    /**
+     * Takes a snapshot of the latencies recorded in the last slots, up to now.
+     *
+     * @param window the number of slots, including the current one.
+     * @return the snapshot.
+     */
+    public Snapshot snapshot(int window) {
+        return snapshot(window, System.currentTimeMillis());
+    }
+
+    /**
+     * Takes a snapshot of the latencies recorded in the last slots, up to a time.
+     *
+     * @param window the number of slots, including the one of the time.
+     * @param time   the time, in milliseconds.
+     * @return the snapshot.
+     */
+    public Snapshot snapshot(int window, long time) {
+        long last = time / slotMillis;
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < slots.length(); i++) {
+            Slot slot = slots.get(i);
+            if (slot != null && slot.epoch <= last && slot.epoch > last - window) {
+                for (int j = 0; j < BUCKETS; j++) {
+                    counts[j] += slot.counts.get(j);
+                }
+            }
+        }
+        return new Snapshot(counts);
+    }
+
+    /**
+     * The latencies recorded in a window, merged.
+     */
+    public static final class Snapshot {
+        private final long[] counts; // The count of each bucket
+        private final long count; // The number of latencies
+
+        /**
+         * Creates a Snapshot.
+         *
+         * @param counts the count of each bucket.
+         */
+        private Snapshot(long[] counts) {
+            this.counts = counts;
+            long count = 0;
+            for (long bucket : counts) {
+                count += bucket;
+            }
+            this.count = count;
+        }
+
+        /**
+         * Returns the number of latencies recorded.
+         *
+         * @return the number of latencies.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns a percentile of the latencies.
+         *
+         * @param percentile the percentile, from 0 to 100.
+         * @return the latency, or 0 if none was recorded.
+         */
+        public long getPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return value(i);
+                }
+            }
+            return value(counts.length - 1);
+        }
+
+        /**
+         * Returns the longest latency, to within the precision of the buckets.
+         *
+         * @return the latency, or 0 if none was recorded.
+         */
+        public long getMax() {
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] != 0) {
+                    return value(i);
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package util;
+
+/**
+ * Fixed-point money arithmetic. Amounts are held as a long number of cents, so sums are exact and no objects are
+ * allocated for arithmetic.
+ */
+public final class Money {
+    /**
+     * The number of basis points in a whole, i.e. 100%.
+     */
+    public static final int BASIS_POINTS = 10000;
+
+    /**
+     * Money is only a set of static helpers.
+     */
+    private Money() {
+    }
+
+    /**
+     * Converts an amount of dollars to cents, rounding to the nearest cent.
+     *
+     * @param dollars an amount in dollars.
+     * @return the amount in cents.
+     */
+    public static long fromDouble(double dollars) {
+        return Math.round(dollars * 100);
+    }
+
+    /**
+     * Converts an amount of cents to dollars, e.g. for storing in a json file.
+     *
+     * @param cents an amount in cents.
+     * @return the amount in dollars.
+     */
+    public static double toDouble(long cents) {
+        return cents / 100d;
+    }
+
+    /**
+     * Returns a fraction of an amount, given in basis points, rounded half away from zero to the nearest cent.
+     *
+     * @param cents       an amount in cents.
+     * @param basisPoints the fraction in basis points, e.g. 1300 for 13%.
+     * @return the fraction of the amount, in cents.
+     */
+    public static long percent(long cents, int basisPoints) {
+        long product = cents * basisPoints;
+        long half = BASIS_POINTS / 2;
+        return product >= 0 ? (product + half) / BASIS_POINTS : (product - half) / BASIS_POINTS;
+    }
+
+    /**
+     * Appends an amount formatted as dollars, e.g. "$12.05", to a StringBuilder.
+     *
+     * @param sb    the StringBuilder to append to.
+     * @param cents an amount in cents.
+     * @return the StringBuilder.
+     */
+    public static StringBuilder append(StringBuilder sb, long cents) {
+        if (cents < 0) {
+            sb.append('-');
+            cents = -cents;
+        }
+
+        long fraction = cents % 100;
+        sb.append('$').append(cents / 100).append('.');
+        if (fraction < 10) {
+            sb.append('0');
+        }
+        return sb.append(fraction);
+    }
+
+    /**
+     * Formats an amount as dollars, e.g. "$12.05".
+     *
+     * @param cents an amount in cents.
+     * @return the formatted amount.
+     */
+    public static String format(long cents) {
+        return append(new StringBuilder(12), cents).toString();
+    }
+}
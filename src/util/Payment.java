@@ -0,0 +1,87 @@
+package util;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * A payment of a table's bill, as recorded in a PaymentLedger.
+ */
+public final class Payment {
+    private final long time; // The time of the payment, in milliseconds
+    private final String server; // The server of the table
+    private final int tableNumber; // The number of the table
+    private final long cents; // The amount paid, in cents
+
+    /**
+     * Creates a Payment.
+     *
+     * @param time        the time of the payment, in milliseconds.
+     * @param server      the server of the table.
+     * @param tableNumber the number of the table.
+     * @param cents       the amount paid, in cents.
+     */
+    public Payment(long time, String server, int tableNumber, long cents) {
+        this.time = time;
+        this.server = server;
+        this.tableNumber = tableNumber;
+        this.cents = cents;
+    }
+
+    /**
+     * Returns the time of the payment.
+     *
+     * @return the time, in milliseconds.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Returns the date of the payment, in the system's time zone.
+     *
+     * @return the date.
+     */
+    public LocalDate getDate() {
+        return Instant.ofEpochMilli(time).atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    /**
+     * Returns the server of the table.
+     *
+     * @return the server.
+     */
+    public String getServer() {
+        return server;
+    }
+
+    /**
+     * Returns the number of the table.
+     *
+     * @return the table number.
+     */
+    public int getTableNumber() {
+        return tableNumber;
+    }
+
+    /**
+     * Returns the amount paid.
+     *
+     * @return the amount, in cents.
+     */
+    public long getCents() {
+        return cents;
+    }
+
+    /**
+     * Returns a String representation of the payment.
+     *
+     * @return a String.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Table Number: ").append(tableNumber).append(", ").append(server)
+                .append(", Total Payment: ");
+        return Money.append(sb, cents).toString();
+    }
+}
@@ -0,0 +1,313 @@
+package util;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Answers queries over the payment history of a PaymentLedger: revenue and number of payments over a range of
+ * days, by day, by server and by table, and the top servers and tables.
+ * <p>
+ * The index keeps a summary of each day: its totals, and its totals per server and per table. A day is summarized
+ * the first time a query covers it, by reading its segment; since segments are append-only, a later query only reads
+ * the payments recorded since. Queries over a range of days summarize the days in parallel and then merge the
+ * summaries, so a query over years of history costs a merge per day once the days are summarized.
+ */
+public class PaymentIndex {
+    /**
+     * The revenue and number of payments of a group of payments.
+     */
+    public static final class Totals {
+        private long cents; // The revenue, in cents
+        private long count; // The number of payments
+
+        /**
+         * Creates empty Totals.
+         */
+        Totals() {
+        }
+
+        /**
+         * Adds a payment.
+         *
+         * @param cents the amount paid, in cents.
+         */
+        private void add(long cents) {
+            this.cents += cents;
+            this.count++;
+        }
+
+        /**
+         * Adds other totals.
+         *
+         * @param other the other totals.
+         */
+        private void add(Totals other) {
+            this.cents += other.cents;
+            this.count += other.count;
+        }
+
+        /**
+         * Returns the revenue.
+         *
+         * @return the revenue, in cents.
+         */
+        public long getCents() {
+            return cents;
+        }
+
+        /**
+         * Returns the number of payments.
+         *
+         * @return the number of payments.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns a String representation of the totals.
+         *
+         * @return a String.
+         */
+        @Override
+        public String toString() {
+            return Money.append(new StringBuilder(), cents).append(" (").append(count)
+                    .append(count == 1 ? " payment)" : " payments)").toString();
+        }
+    }
+
+    /**
+     * The totals of a day, or of a range of days.
+     */
+    private static final class Summary {
+        private final Totals total = new Totals(); // The totals of every payment
+        private final HashMap<String, Totals> servers = new HashMap<>(); // The totals of each server
+        private final HashMap<Integer, Totals> tables = new HashMap<>(); // The totals of each table
+        private long offset = 0; // The offset in the day's segment up to which the summary is complete
+
+        /**
+         * Adds a payment.
+         *
+         * @param payment the payment.
+         */
+        private void add(Payment payment) {
+            total.add(payment.getCents());
+            servers.computeIfAbsent(payment.getServer(), k -> new Totals()).add(payment.getCents());
+            tables.computeIfAbsent(payment.getTableNumber(), k -> new Totals()).add(payment.getCents());
+        }
+
+        /**
+         * Adds another summary.
+         *
+         * @param other the other summary.
+         * @return this summary.
+         */
+        private Summary add(Summary other) {
+            total.add(other.total);
+            other.servers.forEach((k, v) -> servers.computeIfAbsent(k, key -> new Totals()).add(v));
+            other.tables.forEach((k, v) -> tables.computeIfAbsent(k, key -> new Totals()).add(v));
+            return this;
+        }
+    }
+
+    private final PaymentLedger ledger; // The ledger being indexed
+    private final ConcurrentHashMap<LocalDate, Summary> days = new ConcurrentHashMap<>(); // The summary of each day
+
+    /**
+     * Creates a PaymentIndex.
+     *
+     * @param ledger the ledger to index.
+     */
+    public PaymentIndex(PaymentLedger ledger) {
+        this.ledger = ledger;
+    }
+
+    /**
+     * Returns the revenue and number of payments over a range of days.
+     *
+     * @param from the first day, inclusive.
+     * @param to   the last day, inclusive.
+     * @return the totals.
+     */
+    public Totals total(LocalDate from, LocalDate to) {
+        return summarize(from, to).total;
+    }
+
+    /**
+     * Returns the revenue and number of payments of a server over a range of days.
+     *
+     * @param from   the first day, inclusive.
+     * @param to     the last day, inclusive.
+     * @param server the server.
+     * @return the totals.
+     */
+    public Totals totalOfServer(LocalDate from, LocalDate to, String server) {
+        return summarize(from, to).servers.getOrDefault(server, new Totals());
+    }
+
+    /**
+     * Returns the revenue and number of payments of a table over a range of days.
+     *
+     * @param from        the first day, inclusive.
+     * @param to          the last day, inclusive.
+     * @param tableNumber the number of the table.
+     * @return the totals.
+     */
+    public Totals totalOfTable(LocalDate from, LocalDate to, int tableNumber) {
+        return summarize(from, to).tables.getOrDefault(tableNumber, new Totals());
+    }
+
+    /**
+     * Returns the revenue and number of payments of each day of a range that has payments.
+     *
+     * @param from the first day, inclusive.
+     * @param to   the last day, inclusive.
+     * @return the totals of each day, in order.
+     */
+    public TreeMap<LocalDate, Totals> byDay(LocalDate from, LocalDate to) {
+        TreeMap<LocalDate, Totals> totals = new TreeMap<>();
+        ledger.getSegments(from, to).entrySet().parallelStream()
+                .map(segment -> new AbstractMap.SimpleEntry<>(segment.getKey(), summarize(segment.getKey(),
+                        segment.getValue()).total))
+                .forEachOrdered(entry -> totals.put(entry.getKey(), entry.getValue()));
+        return totals;
+    }
+
+    /**
+     * Returns the revenue and number of payments of each server over a range of days.
+     *
+     * @param from the first day, inclusive.
+     * @param to   the last day, inclusive.
+     * @return the totals of each server.
+     */
+    public HashMap<String, Totals> byServer(LocalDate from, LocalDate to) {
+        return summarize(from, to).servers;
+    }
+
+    /**
+     * Returns the revenue and number of payments of each table over a range of days.
+     *
+     * @param from the first day, inclusive.
+     * @param to   the last day, inclusive.
+     * @return the totals of each table.
+     */
+    public HashMap<Integer, Totals> byTable(LocalDate from, LocalDate to) {
+        return summarize(from, to).tables;
+    }
+
+    /**
+     * Returns the servers with the most revenue over a range of days.
+     *
+     * @param from the first day, inclusive.
+     * @param to   the last day, inclusive.
+     * @param n    the number of servers to return.
+     * @return the top servers and their totals, by decreasing revenue.
+     */
+    public List<Map.Entry<String, Totals>> topServers(LocalDate from, LocalDate to, int n) {
+        return top(byServer(from, to), n);
+    }
+
+    /**
+     * Returns the tables with the most revenue over a range of days.
+     *
+     * @param from the first day, inclusive.
+     * @param to   the last day, inclusive.
+     * @param n    the number of tables to return.
+     * @return the top tables and their totals, by decreasing revenue.
+     */
+    public List<Map.Entry<Integer, Totals>> topTables(LocalDate from, LocalDate to, int n) {
+        return top(byTable(from, to), n);
+    }
+
+    /**
+     * Passes the payments of a server over a range of days to an action, day by day.
+     *
+     * @param from   the first day, inclusive.
+     * @param to     the last day, inclusive.
+     * @param server the server.
+     * @param action the action.
+     */
+    public void forEachOfServer(LocalDate from, LocalDate to, String server, Consumer<Payment> action) {
+        for (Map.Entry<LocalDate, File> segment : ledger.getSegments(from, to).entrySet()) {
+            Summary day = summarize(segment.getKey(), segment.getValue());
+            if (day.servers.containsKey(server)) {
+                ledger.read(segment.getValue(), payment -> {
+                    if (payment.getServer().equals(server)) {
+                        action.accept(payment);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Returns the n groups with the most revenue, using a bounded heap.
+     *
+     * @param totals the totals of each group.
+     * @param n      the number of groups to return.
+     * @param <K>    the type of the groups.
+     * @return the top groups, by decreasing revenue.
+     */
+    private static <K> List<Map.Entry<K, Totals>> top(Map<K, Totals> totals, int n) {
+        Comparator<Map.Entry<K, Totals>> byRevenue = Comparator.comparingLong(entry -> entry.getValue().getCents());
+        PriorityQueue<Map.Entry<K, Totals>> heap = new PriorityQueue<>(Math.max(1, n), byRevenue);
+        for (Map.Entry<K, Totals> entry : totals.entrySet()) {
+            if (heap.size() < n) {
+                heap.add(entry);
+            } else if (n > 0 && entry.getValue().getCents() > heap.peek().getValue().getCents()) {
+                heap.poll();
+                heap.add(entry);
+            }
+        }
+
+        ArrayList<Map.Entry<K, Totals>> top = new ArrayList<>(heap);
+        top.sort(byRevenue.reversed());
+        return top;
+    }
+
+    /**
+     * Summarizes a range of days, summarizing the days in parallel.
+     *
+     * @param from the first day, inclusive.
+     * @param to   the last day, inclusive.
+     * @return a new summary of the range.
+     */
+    private Summary summarize(LocalDate from, LocalDate to) {
+        return ledger.getSegments(from, to).entrySet().parallelStream()
+                .map(segment -> copy(summarize(segment.getKey(), segment.getValue())))
+                .reduce(Summary::add)
+                .orElseGet(Summary::new);
+    }
+
+    /**
+     * Returns the summary of a day, reading the payments recorded since it was last brought up to date.
+     *
+     * @param day     the day.
+     * @param segment the segment of the day.
+     * @return the summary of the day.
+     */
+    private Summary summarize(LocalDate day, File segment) {
+        Summary summary = days.computeIfAbsent(day, k -> new Summary());
+        synchronized (summary) {
+            if (segment.length() - segment.length() % PaymentLedger.RECORD_SIZE > summary.offset) {
+                summary.offset = ledger.read(segment, summary.offset, summary::add);
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Copies a day's summary, so that it can be merged into a range without changing it.
+     *
+     * @param summary the summary.
+     * @return a copy.
+     */
+    private static Summary copy(Summary summary) {
+        synchronized (summary) {
+            return new Summary().add(summary);
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package util;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import visual.Login;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only ledger of payments, kept as one segment file per day. Every payment is a fixed-size binary record
+ * appended to the segment of its day, so recording a payment costs the same however long the history is, and
+ * nothing is loaded at startup besides the list of segments and the names of the servers. Segments are read through
+ * memory mapping, only for the days a query asks for.
+ * <p>
+ * Each record is laid out as: time (long), amount in cents (long), server id (int), table number (int), CRC32 of
+ * the previous fields (int). Server ids index the server names, kept one per line in servers.txt.
+ */
+public class PaymentLedger implements Closeable {
+    /**
+     * The size of a record, in bytes.
+     */
+    public static final int RECORD_SIZE = 8 + 8 + 4 + 4 + 4;
+    private static final String SUFFIX = ".ledger"; // The extension of segment files
+    private static final String SERVERS = "servers.txt"; // The file of server names
+
+    private final File directory; // The directory of segment files
+    private final ArrayList<String> servers = new ArrayList<>(); // The name of each server, by id
+    private final HashMap<String, Integer> serverIds = new HashMap<>(); // The id of each server, by name
+    private final TreeMap<LocalDate, File> segments = new TreeMap<>(); // The segment of each day
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE); // Reused to encode appended records
+    private LocalDate openDay; // The day of the segment being appended to
+    private FileChannel channel; // The channel of the segment being appended to
+
+    /**
+     * Opens a ledger, creating its directory if it does not exist.
+     *
+     * @param directory the directory of segment files.
+     */
+    public PaymentLedger(File directory) {
+        this.directory = directory;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Login.logger.warning("Unable to create payment ledger " + directory);
+        }
+
+        File serverFile = new File(directory, SERVERS);
+        if (serverFile.exists()) {
+            try {
+                for (String name : Files.readAllLines(serverFile.toPath(), StandardCharsets.UTF_8)) {
+                    serverIds.put(name, servers.size());
+                    servers.add(name);
+                }
+            } catch (IOException e) {
+                Login.logger.warning("Unable to read " + serverFile + ": " + e.getMessage());
+            }
+        }
+
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                try {
+                    segments.put(LocalDate.parse(name.substring(0, name.length() - SUFFIX.length())), file);
+                } catch (DateTimeParseException e) {
+                    Login.logger.warning("Ignoring unknown payment ledger segment " + file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Truncates a record torn by a crash from the end of a segment, so that records appended after it stay aligned.
+     * Any segment can be appended to, not only the newest, e.g. by importJson or after the clock changed.
+     *
+     * @param segment the segment file.
+     */
+    private static void repair(File segment) {
+        long torn = segment.length() % RECORD_SIZE;
+        if (torn == 0) {
+            return;
+        }
+        try (FileChannel out = FileChannel.open(segment.toPath(), StandardOpenOption.WRITE)) {
+            Login.logger.warning("Discarding " + torn + " bytes of a torn payment record in " + segment);
+            out.truncate(segment.length() - torn);
+            out.force(true);
+        } catch (IOException e) {
+            Login.logger.warning("Unable to repair " + segment + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Records a payment made now.
+     *
+     * @param server      the server of the table.
+     * @param tableNumber the number of the table.
+     * @param cents       the amount paid, in cents.
+     * @return the payment, or null if it could not be recorded.
+     */
+    public Payment record(String server, int tableNumber, long cents) {
+        return record(System.currentTimeMillis(), server, tableNumber, cents);
+    }
+
+    /**
+     * Records a payment, forcing it to disk.
+     *
+     * @param time        the time of the payment, in milliseconds.
+     * @param server      the server of the table.
+     * @param tableNumber the number of the table.
+     * @param cents       the amount paid, in cents.
+     * @return the payment, or null if it could not be recorded.
+     */
+    public synchronized Payment record(long time, String server, int tableNumber, long cents) {
+        try {
+            int id = serverId(server);
+            FileChannel out = channel(toDate(time));
+
+            record.clear();
+            record.putLong(time).putLong(cents).putInt(id).putInt(tableNumber);
+            CRC32 crc = new CRC32();
+            crc.update(record.array(), 0, RECORD_SIZE - 4);
+            record.putInt((int) crc.getValue());
+            record.flip();
+            while (record.hasRemaining()) {
+                out.write(record);
+            }
+            out.force(false);
+        } catch (IOException e) {
+            Login.logger.warning("Unable to record payment of table " + tableNumber + ": " + e.getMessage());
+            return null;
+        }
+        return new Payment(time, server, tableNumber, cents);
+    }
+
+    /**
+     * Returns the id of a server, adding the server if it is new.
+     *
+     * @param server the name of the server.
+     * @return the id.
+     * @throws IOException if a new server cannot be added.
+     */
+    private int serverId(String server) throws IOException {
+        Integer id = serverIds.get(server);
+        if (id != null) {
+            return id;
+        }
+
+        try (FileOutputStream out = new FileOutputStream(new File(directory, SERVERS), true)) {
+            out.write((server + "\n").getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+        serverIds.put(server, servers.size());
+        servers.add(server);
+        return servers.size() - 1;
+    }
+
+    /**
+     * Returns the channel appending to the segment of a day, opening it if needed. A segment is repaired before it
+     * is opened.
+     *
+     * @param day the day.
+     * @return the channel.
+     * @throws IOException if the segment cannot be opened.
+     */
+    private FileChannel channel(LocalDate day) throws IOException {
+        if (day.equals(openDay)) {
+            return channel;
+        }
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+
+        File segment = new File(directory, day + SUFFIX);
+        repair(segment);
+        channel = FileChannel.open(segment.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        openDay = day;
+        segments.put(day, segment);
+        return channel;
+    }
+
+    /**
+     * Passes the payments of a range of days to an action, in the order they were recorded for each day.
+     *
+     * @param from   the first day, inclusive.
+     * @param to     the last day, inclusive.
+     * @param action the action.
+     */
+    public void forEach(LocalDate from, LocalDate to, Consumer<Payment> action) {
+        for (Map.Entry<LocalDate, File> segment : getSegments(from, to).entrySet()) {
+            read(segment.getValue(), action);
+        }
+    }
+
+    /**
+     * Returns the segments of a range of days.
+     *
+     * @param from the first day, inclusive.
+     * @param to   the last day, inclusive.
+     * @return the segment of each day that has payments.
+     */
+    public synchronized TreeMap<LocalDate, File> getSegments(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            return new TreeMap<>();
+        }
+        return new TreeMap<>(segments.subMap(from, true, to, true));
+    }
+
+    /**
+     * Passes the payments of a segment to an action, reading it through memory mapping. Corrupt records are
+     * skipped.
+     *
+     * @param segment the segment file.
+     * @param action  the action.
+     */
+    public void read(File segment, Consumer<Payment> action) {
+        read(segment, 0, action);
+    }
+
+    /**
+     * Passes the payments of a segment from an offset to an action, reading it through memory mapping. Since
+     * segments are append-only, this reads only the payments recorded after an earlier read ended.
+     *
+     * @param segment the segment file.
+     * @param offset  the offset to start at, a multiple of RECORD_SIZE.
+     * @param action  the action.
+     * @return the offset the read ended at, to pass to the next read.
+     */
+    public long read(File segment, long offset, Consumer<Payment> action) {
+        try (FileChannel in = FileChannel.open(segment.toPath(), StandardOpenOption.READ)) {
+            long size = in.size() - in.size() % RECORD_SIZE;
+            if (size <= offset) {
+                return offset;
+            }
+            MappedByteBuffer map = in.map(FileChannel.MapMode.READ_ONLY, offset, size - offset);
+            byte[] bytes = new byte[RECORD_SIZE - 4];
+            CRC32 crc = new CRC32();
+
+            for (int position = 0; position < size - offset; position += RECORD_SIZE) {
+                map.position(position);
+                map.get(bytes);
+                crc.reset();
+                crc.update(bytes, 0, bytes.length);
+                if ((int) crc.getValue() != map.getInt(position + RECORD_SIZE - 4)) {
+                    Login.logger.warning("Skipping corrupt payment record at " + (offset + position) + " of "
+                            + segment);
+                    continue;
+                }
+                action.accept(new Payment(map.getLong(position), getServer(map.getInt(position + 16)),
+                        map.getInt(position + 20), map.getLong(position + 8)));
+            }
+            return size;
+        } catch (IOException e) {
+            Login.logger.warning("Unable to read " + segment + ": " + e.getMessage());
+            return offset;
+        }
+    }
+
+    /**
+     * Returns the name of a server.
+     *
+     * @param id the id of the server.
+     * @return the name, or "?" if the id is unknown.
+     */
+    private synchronized String getServer(int id) {
+        return id >= 0 && id < servers.size() ? servers.get(id) : "?";
+    }
+
+    /**
+     * Returns the days that have payments, in order.
+     *
+     * @return the days.
+     */
+    public synchronized ArrayList<LocalDate> getDays() {
+        return new ArrayList<>(segments.keySet());
+    }
+
+    /**
+     * Imports the payments of a JSON payment history, as written by earlier versions, into a new ledger. Each
+     * payment is recorded at the start of its day. The payments are recorded into a temporary directory that is
+     * renamed into place only once all of them are, so an import that fails partway leaves no ledger behind and is
+     * tried again at the next start.
+     *
+     * @param file      the JSON file.
+     * @param directory the directory of the ledger.
+     * @return the number of payments imported, or -1 if the ledger already has payments or the import failed.
+     */
+    public static int importJson(File file, File directory) {
+        File[] existing = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (existing != null && existing.length > 0) {
+            return -1;
+        }
+
+        File temp = new File(directory.getPath() + ".import");
+        delete(temp); // left by an import that failed
+        int count = 0;
+        try (PaymentLedger ledger = new PaymentLedger(temp); FileReader reader = new FileReader(file)) {
+            JSONArray data = (JSONArray) new JSONParser().parse(reader);
+            for (Object item : data) {
+                JSONObject payment = (JSONObject) item;
+                long time = LocalDate.parse(payment.get("date").toString())
+                        .atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                if (ledger.record(time, String.valueOf(payment.get("server")),
+                        ((Number) payment.get("tableNumber")).intValue(),
+                        Money.fromDouble(((Number) payment.get("payment")).doubleValue())) == null) {
+                    throw new IOException("Unable to record payment " + count);
+                }
+                count++;
+            }
+        } catch (IOException | ParseException | ClassCastException | DateTimeParseException e) {
+            Login.logger.warning("Unable to import payments from " + file + ": " + e.getMessage());
+            delete(temp);
+            return -1;
+        }
+
+        delete(directory); // has no segments, at most the names of servers
+        if (!temp.renameTo(directory)) {
+            Login.logger.warning("Unable to move the imported payments from " + temp + " to " + directory);
+            delete(temp);
+            return -1;
+        }
+        return count;
+    }
+
+    /**
+     * Deletes a ledger directory and its files, if it exists.
+     *
+     * @param directory the directory.
+     */
+    private static void delete(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete()) {
+                    Login.logger.warning("Unable to delete " + file);
+                }
+            }
+        }
+        if (directory.exists() && !directory.delete()) {
+            Login.logger.warning("Unable to delete " + directory);
+        }
+    }
+
+    /**
+     * Returns the date of a time, in the system's time zone.
+     *
+     * @param time the time, in milliseconds.
+     * @return the date.
+     */
+    private static LocalDate toDate(long time) {
+        return Instant.ofEpochMilli(time).atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    /**
+     * Closes the segment being appended to.
+     *
+     * @throws IOException if the segment cannot be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+            openDay = null;
+        }
+    }
+}
@@ -123,7 +123,8 @@ public class LoginController {
                 new Server(user, restaurant);
                 return true;
             case "Cook":
-                new Cook(user, restaurant);
+                Object station = findConfigs(user).get("station");
+                new Cook(user, restaurant, station == null ? null : station.toString());
                 return true;
             case "Manager":
                 new Manager(user, restaurant);
@@ -133,6 +134,25 @@ public class LoginController {
         }
     }
 
+    /**
+     * Finds the configs of a user.
+     *
+     * @param username the username of the user.
+     * @return the user's configs, or an empty JSONObject if the user has none.
+     */
+    private JSONObject findConfigs(String username) {
+        for (Object type : userData) {
+            for (Object user : (JSONArray) ((JSONObject) type).get("users")) {
+                JSONObject userobject = (JSONObject) user;
+                if (userobject.get("user").toString().equalsIgnoreCase(username)) {
+                    JSONObject configs = (JSONObject) userobject.get("configs");
+                    return configs == null ? new JSONObject() : configs;
+                }
+            }
+        }
+        return new JSONObject();
+    }
+
     /**
      * Finds the type of the user and logs the user in, if possible.
      *
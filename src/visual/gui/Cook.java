@@ -6,15 +6,16 @@ import com.jfoenix.controls.JFXListView;
 import core.Ingredient;
 import core.Order;
 import core.Restaurant;
+import core.Station;
 import events.CookEvent;
 import events.ReceiveEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.ListCell;
 import javafx.scene.control.ListView;
+import javafx.scene.image.ImageView;
 import javafx.util.Callback;
 import util.Wrapper;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 
 /**
@@ -22,8 +23,8 @@ import java.util.HashMap;
  */
 public class Cook extends Employee {
     private Order currentOrder = null; // the Cook's current order
-    private static ArrayList<Order> assigned = new ArrayList<>(); // a list of assigned orders
     private boolean isAvailable; // a boolean representing if the chef is available
+    private Station station; // the station this cook works at, or null to take orders from every station
 
     /*
     FXML Variables == DO NOT set to private :)
@@ -45,8 +46,33 @@ public class Cook extends Employee {
      * @param restaurant a restaurant reference
      */
     public Cook(String user, Restaurant restaurant) {
+        this(user, restaurant, null);
+    }
+
+    /**
+     * Initializes a new cook working at a station
+     *
+     * @param user        the username of this cook
+     * @param restaurant  a restaurant reference
+     * @param stationName the name of the cook's station, or null to take orders from every station
+     */
+    public Cook(String user, Restaurant restaurant, String stationName) {
         super(user, "Cook", "cook.fxml", restaurant);
         this.isAvailable = true;
+        this.station = restaurant.getStationRouter().getStation(stationName);
+        if (stationName != null && station == null) {
+            System.err.println("No such station " + stationName + ", " + user + " takes orders from every station");
+        }
+        refreshAssigned(); // initialize() ran before the station was known
+    }
+
+    /**
+     * Returns the station this cook works at.
+     *
+     * @return a station, or null if the cook takes orders from every station.
+     */
+    public Station getStation() {
+        return station;
     }
 
 
@@ -106,8 +132,13 @@ public class Cook extends Employee {
         takeButton.setOnAction(a -> {
             Order order = (Order) orders.getSelectionModel().getSelectedItem().getValue();
             if (order != null) {
+                if (!restaurant.getStationRouter().claim(order, this)) {
+                    showDialog("Order was already taken", new ImageView(error));
+                    refreshAssigned();
+                    return;
+                }
+
                 currentOrder = order;
-                assigned.remove(order);
                 order.setCook(this);
 
                 viewOrder(order, true);
@@ -171,17 +202,6 @@ public class Cook extends Employee {
         return isAvailable;
     }
 
-    /**
-     * Sets the Order of the Cook.
-     *
-     * @param assignedOrder an Order.
-     */
-    public static void assignOrder(Order assignedOrder) {
-        assigned.add(assignedOrder);
-
-
-    }
-
     /**
      * Refreshes the GUI of the cook's interface.
      */
@@ -200,18 +220,10 @@ public class Cook extends Employee {
         if (!isAvailable) return;
         orders.getItems().clear();
         orders.getItems().add(new Wrapper<>("Available Orders", -1, -1));
-        for (Order item : assigned) {
-            orders.getItems().add(new Wrapper<>(item, assigned.indexOf(item), -2));
+        int index = 0;
+        for (Order item : restaurant.getStationRouter().getWaiting(station)) {
+            orders.getItems().add(new Wrapper<>(item, index++, -2));
         }
     }
 
-    /**
-     * Removes a cook from being assigned to an order.
-     *
-     * @param order an order
-     */
-    public static void unassign(Order order) {
-        assigned.remove(order);
-    }
-
 }
@@ -28,6 +28,7 @@ import javafx.scene.text.TextAlignment;
 import javafx.stage.Stage;
 import javafx.util.Callback;
 import util.Alert;
+import util.IdGenerator;
 import util.Log;
 import util.Tuple;
 import util.Wrapper;
@@ -36,6 +37,7 @@ import visual.Login;
 import java.awt.*;
 import java.awt.datatransfer.Clipboard;
 import java.awt.datatransfer.StringSelection;
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.time.LocalDate;
@@ -79,7 +81,8 @@ public class Employee implements Comparable {
     Static Variables
      */
     private static final int WIDTH = 800, HEIGHT = 900; // default window dimensions for employees
-    private static int idCounter = 0; // a static ID counter for all employees
+    private static final IdGenerator ids = new IdGenerator(new File("resources/data/employee_ids.txt"), 0,
+            4); // hands out employee IDs, unique across restarts
     protected static Image noAlerts, alerts, pin, placeholderGraphic, error, success, favicon; // default icons
 
 
@@ -108,7 +111,7 @@ public class Employee implements Comparable {
         this.user = user;
         this.type = type;
         this.restaurant = restaurant;
-        id = idCounter++;
+        id = ids.nextInt();
 
         factory = param -> new JFXListCell<Node>() {
             @Override
@@ -4,35 +4,47 @@ import com.jfoenix.controls.JFXButton;
 import com.jfoenix.controls.JFXListCell;
 import com.jfoenix.controls.JFXListView;
 import com.jfoenix.controls.JFXTextArea;
+import com.jfoenix.controls.JFXTextField;
 import core.*;
 import javafx.application.Platform;
 import javafx.fxml.FXML;
+import javafx.geometry.Insets;
 import javafx.scene.control.ListCell;
 import javafx.scene.control.ListView;
+import javafx.scene.control.Tab;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
 import javafx.util.Callback;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 import util.Log;
+import util.PaymentIndex;
 import util.Wrapper;
 
-import java.io.FileReader;
+import java.io.File;
 import java.io.IOException;
 import java.time.LocalDate;
-import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 
 /**
  * A controller class for this Manager
  */
-public class Manager extends Employee {
+public class Manager extends Employee implements AvailabilityListener {
+    private static final int PAYMENT_TOP = 10; // the number of servers and tables listed with the payments
+    private static final int SERVICE_WINDOW = 15; // the minutes of service times shown with the active orders
+    private static final String SERVICE_EXPORT = "resources/data/service_times.csv"; // export of the service times
+
     /*
     FXML variables == DO NOT set to private
      */
     @FXML
     JFXListView<Wrapper> dishStat; // the statistics list for the menu
     @FXML
+    JFXTextField dishFilter; // the tag query filtering the statistics list for the menu
+    @FXML
     JFXListView<Wrapper> ingredientStat; // the statistics list for the ingredients
     @FXML
     JFXListView<Wrapper> inventory; // printout of all inventory items
@@ -51,10 +63,16 @@ public class Manager extends Employee {
     JFXButton getRequests; // gets the shipment requests of the restaurant currently
     @FXML
     JFXButton getPayments; // gets the payments for a specific day.
+    @FXML
+    JFXButton getServiceTimes; // gets the time orders spent in each stage, and exports it
+    @FXML
+    JFXButton reloadMenu; // reloads the menu from its file
 
 
     private Statistics statistics; // a statistics reference
     private Order viewing; // the order that this manager is currently viewing
+    private JFXListView<Wrapper> availability; // the 86 board, how many portions of each menu item can be made
+    private HashMap<MenuItem, Integer> availabilityRows; // the row of each menu item on the 86 board
 
     /**
      * Initializes a new Manager
@@ -133,17 +151,44 @@ public class Manager extends Employee {
             this.requestsText.clear();
 
             getDateFromSelector(date -> {
-                Platform.runLater(() -> {
-
-                    this.requestsText.setText(parsePayments(date));
-                    requestsText.setStyle("-fx-font-family: monospace");
-                });
+                this.requestsText.setText("Loading payments...");
+                CompletableFuture.supplyAsync(() -> parsePayments(date)).whenComplete((text, error) ->
+                        Platform.runLater(() -> {
+                            if (error != null) {
+                                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                                this.requestsText.setText("Unable to load payments: " + cause);
+                                Log.log(restaurant, String.format("Unable to load payments for %s: %s", date, cause));
+                                return;
+                            }
+                            this.requestsText.setText(text);
+                            requestsText.setStyle("-fx-font-family: monospace");
+                        }));
                 return null;
             });
 
 
         });
 
+        getServiceTimes.setOnAction(a -> {
+            ServiceTimes times = restaurant.getOrderStore().getServiceTimes();
+            StringBuilder report = new StringBuilder(times.report(ServiceTimes.WINDOW_MINUTES));
+            try {
+                times.export(new File(SERVICE_EXPORT), ServiceTimes.WINDOW_MINUTES);
+                report.append(System.lineSeparator()).append("Exported to ").append(SERVICE_EXPORT);
+            } catch (IOException e) {
+                report.append(System.lineSeparator()).append("Unable to export: ").append(e.getMessage());
+            }
+            this.requestsText.setText(report.toString());
+            requestsText.setStyle("-fx-font-family: monospace");
+            Log.log(restaurant, String.format("%s has checked service times.", this.toString()));
+        });
+
+        reloadMenu.setOnAction(a -> {
+            restaurant.reloadMenu();
+            this.requestsText.setText(String.format("Reloaded %d menu items", restaurant.getMenu().size()));
+            Log.log(restaurant, String.format("%s has reloaded the menu.", this.toString()));
+        });
+
         orders.getSelectionModel().selectedItemProperty().addListener((a1, a2, a3) -> {
             if (a3 == null) {
                 return;
@@ -154,6 +199,7 @@ public class Manager extends Employee {
         });
 
         copy.setOnAction(a -> copyToClipboard(requestsText));
+        dishFilter.textProperty().addListener((a1, a2, a3) -> updateMenuStat());
 
         updateMenuStat();
         updateIngredientStat();
@@ -161,44 +207,104 @@ public class Manager extends Employee {
         refreshOrders();
         orderInfo.getItems().add(new Wrapper<>("Order Information", -1, -1));
 
+        initAvailabilityTab(customFactory);
+    }
+
+    /**
+     * Initializes the 86 board tab, which shows how many portions of each menu item can be made
+     *
+     * @param factory the cell factory of the board's list
+     */
+    private void initAvailabilityTab(Callback<ListView<Wrapper>, ListCell<Wrapper>> factory) {
+        Tab availabilityTab = new Tab("86 Board");
+        tabs.getTabs().add(availabilityTab);
+
+        availability = new JFXListView<>();
+        availability.setCellFactory(factory);
+        availabilityRows = new HashMap<>();
+        HBox.setHgrow(availability, Priority.ALWAYS);
+        HBox.setMargin(availability, new Insets(25));
+
+        HBox tabLayout = new HBox(10);
+        tabLayout.getChildren().add(availability);
+        availabilityTab.setContent(tabLayout);
+        fillAvailability();
+    }
+
+    /**
+     * Fills the 86 board with a row for each menu item made from ingredients
+     */
+    private void fillAvailability() {
+        availability.getItems().clear();
+        availabilityRows.clear();
+        availability.getItems().add(new Wrapper<>("Portions Available", -1, -1));
+        AvailabilityBoard board = restaurant.getAvailabilityBoard();
+        for (MenuItem item : restaurant.getMenu()) {
+            int portions = board.getPortions(item);
+            if (portions != AvailabilityBoard.UNLIMITED) {
+                availabilityRows.put(item, availability.getItems().size());
+                availability.getItems().add(new Wrapper<>(item, portions, -1));
+            }
+        }
+    }
+
+    /**
+     * Updates the row of a menu item on the 86 board whose availability has changed
+     *
+     * @param item     the menu item
+     * @param portions the number of portions that can now be made
+     */
+    @Override
+    public void availabilityChanged(MenuItem item, int portions) {
+        Platform.runLater(() -> {
+            Integer row = availabilityRows.get(item);
+            if (row != null) {
+                availability.getItems().set(row, new Wrapper<>(item, portions, -1));
+            }
+        });
+    }
 
+    /**
+     * Rebuilds the 86 board and the menu statistics after the menu was reloaded
+     */
+    @Override
+    public void menuReloaded() {
+        Platform.runLater(() -> {
+            fillAvailability();
+            updateMenuStat();
+        });
     }
 
     /**
-     * Finds the payment details of a specific date
+     * Finds the payment details of a specific date, with the revenue of each server and table that day and the
+     * revenue of the week and month up to it. Reads the payment ledger, so it should not run on the GUI thread.
      *
      * @param pickedDate the date to query for
      * @return a string representation of the payment for the date
      */
     private String parsePayments(LocalDate pickedDate) {
+        PaymentIndex index = restaurant.getPaymentIndex();
         StringBuilder payments = new StringBuilder();
         payments.append(String.format("Payments for %s %s", pickedDate.toString(), System.lineSeparator()));
-        double dailyEarnings = 0;
-        try {
-            JSONParser parser = new JSONParser();
-            Object obj = parser.parse(new FileReader("resources/data/payments.json"));
-            JSONArray data = (JSONArray) obj;
-
-            for (Object item : data) {
-                JSONObject paymentObject = (JSONObject) item;
-                LocalDate lDate = LocalDate.parse(paymentObject.get("date").toString());
-
-                if (pickedDate.equals(lDate)) {
-                    String server = (String) paymentObject.get("server");
-                    Double payment = (double) paymentObject.get("payment");
-                    int tableNum = ((Long) paymentObject.get("tableNumber")).intValue();
-                    payments.append(String.format("Table Number: %d, %s, Total Payment: %.2f%s", tableNum, server, payment, System.lineSeparator()));
-                    dailyEarnings += payment;
-
-                }
-            }
-            payments.append(String.format("%sTotal payments for the day: %.2f", System.lineSeparator(), dailyEarnings));
-            Log.logDate(restaurant, pickedDate, String.format("%s has checked daily payments for ", this.toString()));
-
-
-        } catch (ParseException | IOException e) {
-            e.printStackTrace();
+        restaurant.getPaymentLedger().forEach(pickedDate, pickedDate,
+                payment -> payments.append(payment).append(System.lineSeparator()));
+        payments.append(System.lineSeparator()).append("Total payments for the day: ")
+                .append(index.total(pickedDate, pickedDate)).append(System.lineSeparator());
+
+        payments.append(System.lineSeparator()).append("By server:").append(System.lineSeparator());
+        for (Map.Entry<String, PaymentIndex.Totals> server : index.topServers(pickedDate, pickedDate, PAYMENT_TOP)) {
+            payments.append(String.format("  %-20s %s%n", server.getKey(), server.getValue()));
         }
+        payments.append("By table:").append(System.lineSeparator());
+        for (Map.Entry<Integer, PaymentIndex.Totals> table : index.topTables(pickedDate, pickedDate, PAYMENT_TOP)) {
+            payments.append(String.format("  Table %-14d %s%n", table.getKey(), table.getValue()));
+        }
+
+        payments.append(System.lineSeparator()).append("Total payments for the 7 days to this day: ")
+                .append(index.total(pickedDate.minusDays(6), pickedDate)).append(System.lineSeparator())
+                .append("Total payments for the 30 days to this day: ")
+                .append(index.total(pickedDate.minusDays(29), pickedDate));
+        Log.logDate(restaurant, pickedDate, String.format("%s has checked daily payments for ", this.toString()));
 
         return payments.toString();
     }
@@ -231,9 +337,12 @@ public class Manager extends Employee {
     public void updateMenuStat() {
         dishStat.getItems().clear();
         dishStat.getItems().add(new Wrapper<>("Menu Items", -1, -1));
-        ArrayList<MenuItem> items = statistics.getMenuItems();
+        List<MenuItem> items = statistics.getMenuItems();
+        BitSet matching = restaurant.getMenu().match(TagQuery.parse(dishFilter.getText()));
         for (MenuItem item : items) {
-            dishStat.getItems().add(new Wrapper<>(item, item.getUsage(), -1));
+            if (matching.get(item.getOrdinal())) {
+                dishStat.getItems().add(new Wrapper<>(item, item.getUsage(), -1));
+            }
         }
     }
 
@@ -243,7 +352,7 @@ public class Manager extends Employee {
     public void updateIngredientStat() {
         ingredientStat.getItems().clear();
         ingredientStat.getItems().add(new Wrapper<>("Ingredients", -1, -1));
-        ArrayList<Ingredient> items = statistics.getIngredients();
+        List<Ingredient> items = statistics.getIngredients();
         for (Ingredient item : items) {
             ingredientStat.getItems().add(new Wrapper<>(item, item.getUsage(), -1));
         }
@@ -256,8 +365,14 @@ public class Manager extends Employee {
     public void refreshOrders() {
         orders.getItems().clear();
         orders.getItems().add(new Wrapper<>("Active Orders", -1, -1));
-        for (Order item : restaurant.getAllOrders()) {
-            if (item.isDelivered() || item.isCancelled()) continue;
+        for (Station station : restaurant.getStationRouter().getStations()) {
+            orders.getItems().add(new Wrapper<>(station + ": " + station.getQueue(), 0, 42));
+        }
+        ServiceTimes times = restaurant.getOrderStore().getServiceTimes();
+        for (ServiceTimes.Stage stage : ServiceTimes.Stage.values()) {
+            orders.getItems().add(new Wrapper<>(times.summary(stage, SERVICE_WINDOW), 0, 42));
+        }
+        for (Order item : restaurant.getOrderStore().getActiveOrders()) {
             orders.getItems().add(new Wrapper<>(item, item.getOrderNumber(), -2));
         }
     }
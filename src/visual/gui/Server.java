@@ -20,8 +20,8 @@ import util.Wrapper;
 import java.util.ArrayList;
 import java.util.HashMap;
 
-public class Server extends Employee {
-
+public class Server extends Employee implements AvailabilityListener {
+    private static final int MENU_SEARCH_LIMIT = 50; // the most menu items shown for a search
 
     /*
      FXML Variables == do not set to private, DO NOT remove annotations
@@ -37,6 +37,8 @@ public class Server extends Employee {
     @FXML
     JFXListView<Node> menuList; // the menu items list
     @FXML
+    JFXTextField menuSearch; // the search field filtering the menu items list
+    @FXML
     JFXButton addAdditional; // button to add an element to additional
     @FXML
     JFXButton removeAdditional; // button to remove an element from additional
@@ -75,6 +77,7 @@ public class Server extends Employee {
 
     Order orderToBeDelivered; // the server's order that needs to be delivered
     private ArrayList<Order> readyToDeliver; // list of all orders that need to be delivered
+    private HashMap<MenuItem, Label> menuLabels; // the labels of the menu items list
 
 
     /**
@@ -94,6 +97,7 @@ public class Server extends Employee {
     public void initialize() {
         super.initialize();
         readyToDeliver = new ArrayList<>();
+        menuLabels = new HashMap<>();
         clearIngredientLists();
 
         currentList.setCellFactory(factory);
@@ -101,13 +105,8 @@ public class Server extends Employee {
         toRemove.setCellFactory(factory);
         menuList.setCellFactory(factory);
 
-        menuList.getItems().add(createLabel(new Wrapper<>("Menu Items", -1, -1), getTitleStyle()));
-
-        for (MenuItem item : restaurant.getMenu()) {
-            menuList.getItems().add(createLabel(new Wrapper<>(item, 0, -1), getNormalStyle()));
-        }
-
-        menuList.getItems().sort(comparator);
+        refreshMenu("");
+        menuSearch.textProperty().addListener((a1, a2, a3) -> refreshMenu(a3));
         menuList.getSelectionModel().selectedItemProperty().addListener((a1, a2, a3) -> {
             clearIngredientLists();
             if (a3 == null) {
@@ -207,7 +206,11 @@ public class Server extends Employee {
                 } else {
                     OrderEvent createOrder = new OrderEvent(order, this, this.restaurant);
                     createOrder.execute();
-                    showDialog("Order sent", new ImageView(success));
+                    if (createOrder.isPlaced()) {
+                        showDialog("Order sent", new ImageView(success));
+                    } else {
+                        showDialog("Could not place order: out of ingredients", new ImageView(error));
+                    }
 
                 }
 
@@ -534,6 +537,65 @@ public class Server extends Employee {
         toRemove.getItems().sort(comparator);
     }
 
+    /**
+     * Refreshes the menu items list with the items matching what has been typed in the search field
+     *
+     * @param prefix the text typed so far
+     */
+    private void refreshMenu(String prefix) {
+        menuList.getItems().clear();
+        menuLabels.clear();
+        menuList.getItems().add(createLabel(new Wrapper<>("Menu Items", -1, -1), getTitleStyle()));
+
+        AvailabilityBoard board = restaurant.getAvailabilityBoard();
+        for (MenuItem item : restaurant.getMenu().search(prefix, MENU_SEARCH_LIMIT)) {
+            Label label = createLabel(new Wrapper<>(item, 0, -1), getNormalStyle());
+            label.setText(getMenuLabelText(item, board.getPortions(item)));
+            menuLabels.put(item, label);
+            menuList.getItems().add(label);
+        }
+
+        menuList.getItems().sort(comparator);
+    }
+
+    /**
+     * Updates the label of a menu item whose availability has changed
+     *
+     * @param item     the menu item
+     * @param portions the number of portions that can now be made
+     */
+    @Override
+    public void availabilityChanged(MenuItem item, int portions) {
+        Platform.runLater(() -> {
+            Label label = menuLabels.get(item);
+            if (label != null) {
+                label.setText(getMenuLabelText(item, portions));
+            }
+        });
+    }
+
+    /**
+     * Rebuilds the menu items list after the menu was reloaded
+     */
+    @Override
+    public void menuReloaded() {
+        Platform.runLater(() -> refreshMenu(menuSearch.getText()));
+    }
+
+    /**
+     * Gets the text of a menu item's label, showing how many portions can be made
+     *
+     * @param item     the menu item
+     * @param portions the number of portions that can be made
+     * @return the label text
+     */
+    private static String getMenuLabelText(MenuItem item, int portions) {
+        if (portions == AvailabilityBoard.UNLIMITED) {
+            return item.toString();
+        }
+        return portions > 0 ? item + " (" + portions + ")" : item + " (86)";
+    }
+
     /**
      * Sets the Order to be delivered for this server
      *
@@ -552,14 +614,12 @@ public class Server extends Employee {
         activeOrders.getItems().add(new Wrapper<>("Active Orders", -1, -1));
         toDeliver.getItems().clear();
         toDeliver.getItems().add(new Wrapper<>("Ready to Deliver", -1, -1));
-        for (Order item : restaurant.getAllOrders()) {
-            if (item.isCooked() && !item.isDelivered()) {
-                if (item.getServer() != this)
-                    continue;
+        for (Order item : restaurant.getOrderStore().getOrders(this)) {
+            if (item.isDelivered()) continue;
+            if (item.isCooked()) {
                 readyToDeliver.add(item);
                 toDeliver.getItems().add(new Wrapper<>(item, item.getOrderNumber(), -2));
             }
-            if (item.isDelivered() || item.isCancelled() || item.getServer() != this) continue;
             activeOrders.getItems().add(new Wrapper<>(item, item.getOrderNumber(), -2));
         }
     }